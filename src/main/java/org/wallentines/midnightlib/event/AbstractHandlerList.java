@@ -0,0 +1,72 @@
+package org.wallentines.midnightlib.event;
+
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * The base of handler lists whose handlers are not {@link EventHandler EventHandlers}, such as the
+ * primitive-specialized lists. Handlers are stored the same way as in a {@link HandlerList}: in an immutable snapshot
+ * sorted by priority, with weakly or strongly referenced listeners and optional per-handler metrics. Subclasses only
+ * need to provide an {@code invoke} method for their handler type, which calls each of {@link #getHandlers()} between
+ * {@link #begin(Entry)} and either {@link #succeeded(Entry, long)} or {@link #failed(Entry, Throwable, long)}.
+ * @param <H> The type of handler stored in the list
+ */
+abstract class AbstractHandlerList<H> extends CopyOnWriteHandlerList<H, CopyOnWriteHandlerList.Entry<H>> {
+
+    @SuppressWarnings("rawtypes")
+    private static final Entry[] EMPTY = new Entry[0];
+
+    /**
+     * Returned by {@link #begin(Entry)} when a call is not timed
+     */
+    protected static final long UNTIMED = Long.MIN_VALUE;
+
+    @SuppressWarnings("unchecked")
+    protected AbstractHandlerList() {
+        super((Entry<H>[]) EMPTY);
+    }
+
+    @Override
+    protected Entry<H> createEntry(Object listener, int priority, H handler, ReferenceQueue<Object> queue) {
+        return new Entry<>(listener, priority, handler, queue);
+    }
+
+    /**
+     * Gets the handlers to invoke, in priority order, after removing those whose listeners have been
+     * garbage-collected
+     * @return The current handler snapshot. This array is shared, and must not be modified
+     */
+    protected final Entry<H>[] getHandlers() {
+        clearExpiredHandlers();
+        return handlers;
+    }
+
+    /**
+     * Starts timing a call to a handler, if the list is instrumented
+     * @param entry The handler which is about to be called
+     * @return The time the call started at, or {@link #UNTIMED} if it is not timed
+     */
+    protected final long begin(Entry<H> entry) {
+        return entry.metrics != null && isInstrumented() ? System.nanoTime() : UNTIMED;
+    }
+
+    /**
+     * Records that a call started with {@link #begin(Entry)} returned normally
+     * @param entry The handler which was called
+     * @param start The value returned by {@link #begin(Entry)}
+     */
+    protected final void succeeded(Entry<H> entry, long start) {
+        handleSuccess(entry, start == UNTIMED ? null : entry.metrics, start);
+    }
+
+    /**
+     * Records that a call started with {@link #begin(Entry)} threw an exception, and reports it to the list's
+     * {@link FailurePolicy}
+     * @param entry The handler which was called
+     * @param th The exception which was thrown
+     * @param start The value returned by {@link #begin(Entry)}
+     */
+    protected final void failed(Entry<H> entry, Throwable th, long start) {
+        handleFailure(entry, th, start == UNTIMED ? null : entry.metrics, start);
+    }
+
+}
@@ -0,0 +1,361 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An event bus which moves event handling off of the threads which post events. Events are placed in a preallocated,
+ * lock-free ring buffer by any number of producer threads, and are drained in batches by a single consumer thread,
+ * which invokes them on their {@link HandlerList HandlerLists}.
+ * <br/>
+ * Consecutive events posted to the same handler list are dispatched together using
+ * {@link HandlerList#invokeAll(Object[], int, int) invokeAll}. Events posted to the same handler list are always
+ * handled in the order they were posted.
+ */
+public class AsyncEventBus implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    /**
+     * Used as the target of events which should be dispatched through {@link Event#invoke(Object)}
+     */
+    private static final Object GLOBAL = new Object();
+
+    private static final long PARK_NANOS = 1_000_000L;
+
+    /**
+     * Determines how a thread waits when it cannot make progress. The consumer waits this way when the ring is empty,
+     * and producers wait this way when the ring is full and {@link Backpressure#BLOCK} is used.
+     */
+    public enum WaitStrategy {
+        /**
+         * Spins on the CPU. This has the lowest latency, but will fully occupy a core.
+         */
+        BUSY_SPIN,
+        /**
+         * Yields to other threads between checks.
+         */
+        YIELD,
+        /**
+         * Parks the thread until it is signalled. This has the highest latency, but uses no CPU while idle.
+         */
+        PARK
+    }
+
+    /**
+     * Determines what happens when an event is posted while the ring is full
+     */
+    public enum Backpressure {
+        /**
+         * The posting thread waits until there is space in the ring
+         */
+        BLOCK,
+        /**
+         * The event is discarded, and {@link #post(HandlerList, Object) post} returns false
+         */
+        DROP,
+        /**
+         * An {@link IllegalStateException} is thrown by the posting thread
+         */
+        THROW
+    }
+
+    private final int mask;
+    private final Object[] targets;
+    private final Object[] events;
+
+    /**
+     * The sequence of each slot. A slot at index {@code i} is free to be claimed for position {@code p} when its
+     * sequence is {@code p}, and is ready to be consumed when its sequence is {@code p + 1}
+     */
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next position to be consumed. This is only written by the consumer thread, once per batch
+     */
+    private volatile long head;
+
+    private final int batchSize;
+    private final WaitStrategy waitStrategy;
+    private final Backpressure backpressure;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * The number of producers which are currently posting. The consumer only stops once this reaches zero, so every
+     * event which was accepted before the bus closed is dispatched
+     */
+    private final AtomicInteger posting = new AtomicInteger();
+
+    /**
+     * The consumer thread. This is only created once the bus is started, so it never sees a partially constructed bus
+     */
+    private volatile Thread consumer;
+    private volatile boolean running;
+    private volatile boolean parked;
+
+    /**
+     * Creates a new event bus which blocks producers when it is full
+     * @param capacity The number of events which may be waiting at once. This will be rounded up to a power of two
+     * @param waitStrategy How threads should wait when they cannot make progress
+     */
+    public AsyncEventBus(int capacity, WaitStrategy waitStrategy) {
+        this(capacity, 256, waitStrategy, Backpressure.BLOCK);
+    }
+
+    /**
+     * Creates a new event bus
+     * @param capacity The number of events which may be waiting at once. This will be rounded up to a power of two
+     * @param batchSize The maximum number of events the consumer will drain at once
+     * @param waitStrategy How threads should wait when they cannot make progress
+     * @param backpressure What should happen when an event is posted while the ring is full
+     */
+    public AsyncEventBus(int capacity, int batchSize, WaitStrategy waitStrategy, Backpressure backpressure) {
+
+        if(capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity must be between 1 and 2^30!");
+        if(batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1!");
+
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity) size <<= 1;
+
+        this.mask = size - 1;
+        this.targets = new Object[size];
+        this.events = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for(int i = 0 ; i < size ; i++) {
+            sequences.set(i, i);
+        }
+
+        this.batchSize = Math.min(batchSize, size);
+        this.waitStrategy = waitStrategy;
+        this.backpressure = backpressure;
+    }
+
+    /**
+     * Starts the consumer thread
+     * @throws IllegalStateException If the bus has already been started
+     */
+    public synchronized void start() {
+        if(consumer != null) throw new IllegalStateException("Attempt to start an event bus which was already started!");
+
+        Thread thread = new Thread(this::consume, "Async Event Bus");
+        thread.setDaemon(true);
+        running = true;
+        consumer = thread;
+        thread.start();
+    }
+
+    /**
+     * Posts an event to be invoked on the given handler list by the consumer thread
+     * @param handlers The handler list to invoke the event on
+     * @param event The event to invoke
+     * @param <T> The type of event to invoke
+     * @return Whether the event was accepted. This will only be false if the ring is full and
+     *         {@link Backpressure#DROP} is used
+     * @throws IllegalStateException If the bus is not running, or if the ring is full and {@link Backpressure#THROW}
+     *                               is used
+     */
+    public <T> boolean post(HandlerList<T> handlers, T event) {
+        return offer(handlers, event);
+    }
+
+    /**
+     * Posts an event to be invoked as a global {@link Event} by the consumer thread
+     * @param event The event to invoke
+     * @return Whether the event was accepted. This will only be false if the ring is full and
+     *         {@link Backpressure#DROP} is used
+     * @throws IllegalStateException If the bus is not running, or if the ring is full and {@link Backpressure#THROW}
+     *                               is used
+     */
+    public boolean post(Object event) {
+        return offer(GLOBAL, event);
+    }
+
+    /**
+     * Gets the approximate number of events waiting to be consumed
+     * @return The number of waiting events
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    /**
+     * Gets the number of events which have been dropped because the ring was full
+     * @return The number of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops accepting new events, and waits for the consumer thread to finish dispatching all waiting events
+     */
+    @Override
+    public void close() {
+        running = false;
+        Thread thread = consumer;
+        if(thread == null) return;
+
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean offer(Object target, Object event) {
+
+        if(event == null) return false;
+
+        // Counted before checking whether the bus is running, so either close() waits for this event, or this sees
+        // that the bus has closed
+        posting.incrementAndGet();
+        try {
+            return publish(target, event);
+        } finally {
+            posting.decrementAndGet();
+        }
+    }
+
+    private boolean publish(Object target, Object event) {
+
+        if(!running) throw new IllegalStateException("Attempt to post an event to a bus which is not running!");
+
+        long position;
+        while(true) {
+            position = tail.get();
+            long available = sequences.get((int) position & mask) - position;
+            if(available == 0) {
+                if(tail.compareAndSet(position, position + 1)) break;
+            } else if(available < 0) {
+                // The slot has not been consumed since the last time the ring wrapped around
+                if(backpressure == Backpressure.DROP) {
+                    dropped.increment();
+                    return false;
+                }
+                if(backpressure == Backpressure.THROW) {
+                    throw new IllegalStateException("Attempt to post an event to a full bus!");
+                }
+                if(!running) throw new IllegalStateException("Attempt to post an event to a bus which is not running!");
+                idle(false);
+            }
+        }
+
+        int index = (int) position & mask;
+        targets[index] = target;
+        events[index] = event;
+        sequences.lazySet(index, position + 1);
+
+        if(waitStrategy == WaitStrategy.PARK && parked) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    private void consume() {
+
+        Object[] batchTargets = new Object[batchSize];
+        Object[] batchEvents = new Object[batchSize];
+
+        while(true) {
+
+            int count = drain(batchTargets, batchEvents);
+            if(count == 0) {
+                // Wait for producers which are still posting, or have claimed a slot but not yet published it
+                if(!running && posting.get() == 0 && tail.get() == head) break;
+                idle(true);
+                continue;
+            }
+
+            try {
+                dispatch(batchTargets, batchEvents, count);
+            } catch (Throwable th) {
+                LOGGER.error("An exception was thrown while dispatching a batch of events!", th);
+            }
+
+            Arrays.fill(batchTargets, 0, count, null);
+            Arrays.fill(batchEvents, 0, count, null);
+        }
+    }
+
+    private int drain(Object[] batchTargets, Object[] batchEvents) {
+
+        long position = head;
+        int count = 0;
+        while(count < batchSize) {
+            int index = (int) position & mask;
+            if(sequences.get(index) != position + 1) break;
+
+            batchTargets[count] = targets[index];
+            batchEvents[count] = events[index];
+            count++;
+
+            targets[index] = null;
+            events[index] = null;
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+        }
+        head = position;
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void dispatch(Object[] batchTargets, Object[] batchEvents, int count) {
+
+        int start = 0;
+        while(start < count) {
+
+            Object target = batchTargets[start];
+            int end = start + 1;
+            while(end < count && batchTargets[end] == target) {
+                end++;
+            }
+
+            if(target == GLOBAL) {
+                for(int i = start ; i < end ; i++) {
+                    Event.invoke(batchEvents[i]);
+                }
+            } else {
+                ((HandlerList<Object>) target).invokeAll(batchEvents, start, end);
+            }
+            start = end;
+        }
+    }
+
+    private boolean isEmpty() {
+        long position = head;
+        return sequences.get((int) position & mask) != position + 1;
+    }
+
+    private void idle(boolean isConsumer) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            case PARK:
+                if(isConsumer) {
+                    parked = true;
+                    if(isEmpty() && running) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    parked = false;
+                } else {
+                    LockSupport.parkNanos(this, 1000L);
+                }
+                break;
+        }
+    }
+
+}
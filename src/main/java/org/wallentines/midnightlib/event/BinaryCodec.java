@@ -0,0 +1,372 @@
+package org.wallentines.midnightlib.event;
+
+import org.wallentines.mdcfg.serializer.SerializeContext;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding for serialized events. Values are written through a {@link SerializeContext}, so any
+ * event with an mdcfg serializer can be encoded. Each value is a one-byte tag followed by its data. Integers and
+ * lengths are written as variable-length integers, so small values take a single byte.
+ * <br/>
+ * Values are read directly from a {@link ByteBuffer}, which may be memory-mapped, without copying them into an
+ * intermediate array first.
+ */
+final class BinaryCodec {
+
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte DECIMAL = 6;
+    private static final byte FALSE = 7;
+    private static final byte TRUE = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+
+    /**
+     * The deepest nesting of lists and maps which will be read, so corrupt data cannot exhaust the stack
+     */
+    private static final int MAX_DEPTH = 256;
+
+    private BinaryCodec() { }
+
+    /**
+     * Encodes a serialized value
+     * @param context The context the value was serialized with
+     * @param value The value to encode
+     * @param out The output to write to
+     * @param <O> The type of serialized values
+     * @throws IllegalArgumentException If the value is not a string, number, boolean, list, or map
+     */
+    static <O> void write(SerializeContext<O> context, O value, Output out) {
+
+        if(context.isString(value)) {
+            out.writeByte(STRING);
+            out.writeString(context.asString(value).getOrThrow());
+        } else if(context.isNumber(value)) {
+            writeNumber(context.asNumber(value).getOrThrow(), out);
+        } else if(context.isBoolean(value)) {
+            out.writeByte(context.asBoolean(value).getOrThrow() ? TRUE : FALSE);
+        } else if(context.isList(value)) {
+            List<O> values = new ArrayList<>(context.asList(value).getOrThrow());
+            out.writeByte(LIST);
+            out.writeVarInt(values.size());
+            for(O element : values) {
+                write(context, element, out);
+            }
+        } else if(context.isMap(value)) {
+            Map<String, O> values = context.asMap(value).getOrThrow();
+            out.writeByte(MAP);
+            out.writeVarInt(values.size());
+            for(Map.Entry<String, O> entry : values.entrySet()) {
+                out.writeString(entry.getKey());
+                write(context, entry.getValue(), out);
+            }
+        } else {
+            throw new IllegalArgumentException("Unable to encode " + value + "!");
+        }
+    }
+
+    /**
+     * Decodes a serialized value, starting at the buffer's position. The buffer's position is advanced past the value.
+     * @param context The context to deserialize the value with
+     * @param in The buffer to read from
+     * @param <O> The type of serialized values
+     * @return The decoded value
+     * @throws IllegalArgumentException If the buffer does not contain a valid value
+     */
+    static <O> O read(SerializeContext<O> context, ByteBuffer in) {
+        return read(context, in, 0);
+    }
+
+    private static <O> O read(SerializeContext<O> context, ByteBuffer in, int depth) {
+
+        byte tag = in.get();
+        switch (tag) {
+            case STRING:
+                return context.toString(readString(in));
+            case INT:
+                return context.toNumber(zigZagDecode((int) readVarLong(in)));
+            case LONG:
+                return context.toNumber(zigZagDecode(readVarLong(in)));
+            case FLOAT:
+                return context.toNumber(in.getFloat());
+            case DOUBLE:
+                return context.toNumber(in.getDouble());
+            case DECIMAL:
+                return context.toNumber(new BigDecimal(readString(in)));
+            case FALSE:
+                return context.toBoolean(false);
+            case TRUE:
+                return context.toBoolean(true);
+            case LIST: {
+                int size = readSize(in, depth);
+                List<O> out = new ArrayList<>(size);
+                for(int i = 0 ; i < size ; i++) {
+                    out.add(read(context, in, depth + 1));
+                }
+                return context.toList(out);
+            }
+            case MAP: {
+                int size = readSize(in, depth);
+                Map<String, O> out = new LinkedHashMap<>();
+                for(int i = 0 ; i < size ; i++) {
+                    String key = readString(in);
+                    out.put(key, read(context, in, depth + 1));
+                }
+                return context.toMap(out);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag + "!");
+        }
+    }
+
+    /**
+     * Reads a variable-length integer, starting at the buffer's position
+     * @param in The buffer to read from
+     * @return The decoded integer
+     */
+    static int readVarInt(ByteBuffer in) {
+        long value = readVarLong(in);
+        if(value < 0 || value > Integer.MAX_VALUE) throw new IllegalArgumentException("Variable-length integer out of range!");
+        return (int) value;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string, starting at the buffer's position
+     * @param in The buffer to read from
+     * @return The decoded string
+     */
+    static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        if(length > in.remaining()) throw new IllegalArgumentException("String length exceeds the remaining data!");
+        if(!in.hasArray()) {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String out = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return out;
+    }
+
+    /**
+     * Reads the number of elements in a list or map. Every element takes at least one byte, so a size larger than the
+     * remaining data can only come from corrupt data, and is rejected before anything is allocated for it.
+     */
+    private static int readSize(ByteBuffer in, int depth) {
+        if(depth >= MAX_DEPTH) throw new IllegalArgumentException("Values are nested too deeply!");
+        int size = readVarInt(in);
+        if(size > in.remaining()) throw new IllegalArgumentException("Size exceeds the remaining data!");
+        return size;
+    }
+
+    private static void writeNumber(Number number, Output out) {
+        if(number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            out.writeByte(INT);
+            out.writeVarLong(zigZagEncode(number.intValue()));
+        } else if(number instanceof Long) {
+            out.writeByte(LONG);
+            out.writeVarLong(zigZagEncode(number.longValue()));
+        } else if(number instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat(number.floatValue());
+        } else if(number instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(number.doubleValue());
+        } else {
+            // Arbitrary precision numbers are kept exact
+            out.writeByte(DECIMAL);
+            out.writeString(number.toString());
+        }
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long out = 0;
+        for(int shift = 0 ; shift < 64 ; shift += 7) {
+            byte b = in.get();
+            out |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return out;
+        }
+        throw new IllegalArgumentException("Variable-length integer is too long!");
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A growable byte array which encoded values are written to. Instances can be reused by calling {@link #reset()}.
+     */
+    static final class Output {
+
+        private byte[] buffer;
+        private int size;
+
+        Output(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        /**
+         * Gets the number of bytes written since the last reset
+         * @return The number of bytes written
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Discards everything written so far
+         */
+        void reset() {
+            size = 0;
+        }
+
+        /**
+         * Copies the written bytes into a new array
+         * @return The written bytes
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        /**
+         * Copies the written bytes into a buffer, at its position
+         * @param out The buffer to copy into
+         */
+        void writeTo(ByteBuffer out) {
+            out.put(buffer, 0, size);
+        }
+
+        /**
+         * Copies a range of the written bytes into a buffer, at its position
+         * @param out The buffer to copy into
+         * @param offset The index of the first byte to copy
+         * @param length The number of bytes to copy
+         */
+        void writeTo(ByteBuffer out, int offset, int length) {
+            out.put(buffer, offset, length);
+        }
+
+        /**
+         * Appends bytes which were already encoded
+         * @param bytes The bytes to write
+         */
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        /**
+         * Appends everything written to another output
+         * @param other The output to copy from
+         */
+        void write(Output other) {
+            ensure(other.size);
+            System.arraycopy(other.buffer, 0, buffer, size, other.size);
+            size += other.size;
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeFloat(float value) {
+            writeInt(Float.floatToIntBits(value));
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToLongBits(value));
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        /**
+         * Overwrites four bytes which were already written
+         * @param index The index of the first byte
+         * @param value The value to write
+         */
+        void setInt(int index, int value) {
+            buffer[index] = (byte) (value >>> 24);
+            buffer[index + 1] = (byte) (value >>> 16);
+            buffer[index + 2] = (byte) (value >>> 8);
+            buffer[index + 3] = (byte) value;
+        }
+
+        /**
+         * Reads a byte which was already written
+         * @param index The index of the byte
+         * @return The byte at the index
+         */
+        byte getByte(int index) {
+            return buffer[index];
+        }
+
+        /**
+         * Reads four bytes which were already written
+         * @param index The index of the first byte
+         * @return The value at the index
+         */
+        int getInt(int index) {
+            return (buffer[index] & 0xFF) << 24 | (buffer[index + 1] & 0xFF) << 16 | (buffer[index + 2] & 0xFF) << 8 | buffer[index + 3] & 0xFF;
+        }
+
+        private void ensure(int bytes) {
+            if(size + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+            }
+        }
+    }
+
+}
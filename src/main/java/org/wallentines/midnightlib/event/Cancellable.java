@@ -0,0 +1,21 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * An event which can be cancelled by its handlers. Once an event is cancelled, handlers which were registered to
+ * ignore cancelled events will be skipped.
+ */
+public interface Cancellable {
+
+    /**
+     * Determines whether the event has been cancelled
+     * @return Whether the event has been cancelled
+     */
+    boolean isCancelled();
+
+    /**
+     * Changes whether the event is cancelled
+     * @param cancelled Whether the event should be cancelled
+     */
+    void setCancelled(boolean cancelled);
+
+}
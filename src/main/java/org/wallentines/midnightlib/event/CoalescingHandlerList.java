@@ -0,0 +1,146 @@
+package org.wallentines.midnightlib.event;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * A handler list which coalesces events before they reach its handlers. Invoked events are held, and only one event
+ * per key is delivered each time the list is {@link #flush() flushed}. By default, the most recent event for each key
+ * is delivered, but a merge function can be supplied to combine them instead.
+ * <br/>
+ * The list can either be flushed manually, such as once per tick, or automatically at the end of a time window which
+ * starts when the first event is held. Flushes never overlap, so events with the same key are always delivered in the
+ * order they were held. Events whose key is null are coalesced with each other.
+ * @param <K> The type of key events are coalesced by
+ * @param <T> The type of event to handle
+ */
+public class CoalescingHandlerList<K, T> extends HandlerList<T> {
+
+    /**
+     * Used in place of null keys, which cannot be stored in a concurrent map
+     */
+    private static final Object NULL_KEY = new Object();
+
+    private final Function<? super T, ? extends K> keyExtractor;
+    private final BinaryOperator<T> merger;
+    private final ConcurrentHashMap<Object, T> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+
+    private final ScheduledExecutorService scheduler;
+    private final long windowNanos;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Creates a handler list which delivers the most recent event for each key when flushed manually
+     * @param keyExtractor A function which determines the key of an event
+     */
+    public CoalescingHandlerList(Function<? super T, ? extends K> keyExtractor) {
+        this(keyExtractor, (previous, latest) -> latest);
+    }
+
+    /**
+     * Creates a handler list which merges events with the same key, and delivers them when flushed manually
+     * @param keyExtractor A function which determines the key of an event
+     * @param merger A function which combines a held event with a newer event with the same key
+     */
+    public CoalescingHandlerList(Function<? super T, ? extends K> keyExtractor, BinaryOperator<T> merger) {
+        this.keyExtractor = keyExtractor;
+        this.merger = merger;
+        this.scheduler = null;
+        this.windowNanos = 0L;
+    }
+
+    /**
+     * Creates a handler list which merges events with the same key, and delivers them at the end of each window
+     * @param keyExtractor A function which determines the key of an event
+     * @param merger A function which combines a held event with a newer event with the same key
+     * @param scheduler The executor to flush the list on. If it rejects a flush, such as after it has been shut down,
+     *                  events are delivered immediately instead
+     * @param window How long events should be held after the first event in a window is invoked
+     */
+    public CoalescingHandlerList(Function<? super T, ? extends K> keyExtractor, BinaryOperator<T> merger, ScheduledExecutorService scheduler, Duration window) {
+        if(window.isNegative() || window.isZero()) throw new IllegalArgumentException("Coalescing window must be positive!");
+        this.keyExtractor = keyExtractor;
+        this.merger = merger;
+        this.scheduler = scheduler;
+        this.windowNanos = window.toNanos();
+    }
+
+    /**
+     * Holds an event until the next flush, merging it with any held event with the same key
+     * @param event The event to invoke
+     */
+    @Override
+    public void invoke(T event) {
+
+        K key = keyExtractor.apply(event);
+        pending.merge(key == null ? NULL_KEY : key, event, merger);
+
+        if(scheduler != null && scheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::flushWindow, windowNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ex) {
+                // The scheduler has shut down, so nothing else will flush the held events
+                scheduled.set(false);
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public void invokeAll(Collection<? extends T> events) {
+        for(T event : events) {
+            invoke(event);
+        }
+    }
+
+    @Override
+    public void invokeAll(T[] events, int start, int end) {
+        for(int i = start ; i < end ; i++) {
+            invoke(events[i]);
+        }
+    }
+
+    /**
+     * Delivers all held events to the registered handlers as a batch. Events invoked while the list is being flushed
+     * may be held until the next flush. Events with different keys are not delivered in any particular order.
+     */
+    public void flush() {
+
+        if(pending.isEmpty()) return;
+
+        // Otherwise a scheduled flush and a manual flush could each take an event with the same key, and deliver
+        // them out of order
+        synchronized (flushLock) {
+            List<T> events = new ArrayList<>(pending.size());
+            for(Object key : pending.keySet()) {
+                T event = pending.remove(key);
+                if(event != null) events.add(event);
+            }
+            super.invokeAll(events);
+        }
+    }
+
+    /**
+     * Gets the number of keys which have an event waiting to be delivered
+     * @return The number of held events
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void flushWindow() {
+        scheduled.set(false);
+        flush();
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+ * Compiles handler snapshots into chains of {@link CompiledNode CompiledNodes}. Each node is defined as a new hidden
+ * class from the template's bytecode, so every handler in a chain is called from a call site which has only ever seen
+ * that handler, and the JIT can inline it. If hidden classes are not available, the template class is used directly,
+ * which still avoids the shared loop, but shares type profiles between chains.
+ */
+final class CompiledDispatch {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType NODE_TYPE = MethodType.methodType(void.class, HandlerList.class, HandlerList.WrappedHandler[].class, Dispatcher.class);
+
+    /**
+     * The bytecode of the template node, or null if it could not be read
+     */
+    private static final byte[] TEMPLATE = readTemplate();
+
+    private CompiledDispatch() { }
+
+    /**
+     * A compiled handler chain
+     */
+    interface Dispatcher {
+
+        /**
+         * Calls every handler in the chain
+         * @param event The event to handle
+         */
+        void invoke(Object event);
+    }
+
+    /**
+     * Compiles the given snapshot of a handler list
+     * @param list The list the handlers belong to
+     * @param snapshot The handlers to call, in order
+     * @return A compiled chain which calls each handler in the snapshot
+     */
+    static Dispatcher compile(HandlerList<?> list, HandlerList.WrappedHandler<?>[] snapshot) {
+
+        Dispatcher next = null;
+        int end = snapshot.length;
+        int start = (end - 1) / CompiledNode.SLOTS * CompiledNode.SLOTS;
+
+        // Built from the end, since each node refers to the node after it
+        while(start >= 0 && end > 0) {
+            next = newNode(list, Arrays.copyOfRange(snapshot, start, end), next);
+            end = start;
+            start -= CompiledNode.SLOTS;
+        }
+        return next == null ? event -> { } : next;
+    }
+
+    private static Dispatcher newNode(HandlerList<?> list, HandlerList.WrappedHandler<?>[] slots, Dispatcher next) {
+        if(TEMPLATE != null) {
+            try {
+                MethodHandles.Lookup lookup = defineNodeClass();
+                MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(), NODE_TYPE);
+                return (Dispatcher) constructor.invoke(list, slots, next);
+            } catch (Throwable th) {
+                LOGGER.debug("Unable to define a compiled handler node. The template will be used instead", th);
+            }
+        }
+        return new CompiledNode(list, slots, next);
+    }
+
+    /**
+     * Defines a new clone of the template node
+     * @return A lookup on the new class
+     * @throws IllegalAccessException If the class could not be defined
+     */
+    private static MethodHandles.Lookup defineNodeClass() throws IllegalAccessException {
+        return LOOKUP.defineHiddenClass(TEMPLATE, true);
+    }
+
+    private static byte[] readTemplate() {
+        try(InputStream is = CompiledNode.class.getResourceAsStream("CompiledNode.class")) {
+            if(is == null) return null;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException ex) {
+            LOGGER.debug("Unable to read the compiled handler node template", ex);
+            return null;
+        }
+    }
+
+}
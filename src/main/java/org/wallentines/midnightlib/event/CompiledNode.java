@@ -0,0 +1,151 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * The template for a single node of a compiled handler chain. Each node calls up to 8 handlers, through a separate
+ * call site for each one, and then calls the next node in the chain.
+ * <br/>
+ * This class is cloned into a new hidden class for every node by {@link CompiledDispatch}, so each call site keeps its
+ * own type profile, and can be inlined by the JIT. Do not factor the repeated blocks into a shared method, as that
+ * would merge the call sites back together.
+ * <br/>
+ * Apart from the call itself, each slot goes through the same helpers as {@link HandlerList#handle(HandlerList.WrappedHandler, Object)},
+ * so cancellation and failures are handled identically whether or not a list has been compiled.
+ */
+final class CompiledNode implements CompiledDispatch.Dispatcher {
+
+    static final int SLOTS = 8;
+
+    private final HandlerList<Object> list;
+    private final CompiledDispatch.Dispatcher next;
+
+    private final HandlerList.WrappedHandler<Object> w0;
+    private final EventHandler<Object> h0;
+    private final HandlerList.WrappedHandler<Object> w1;
+    private final EventHandler<Object> h1;
+    private final HandlerList.WrappedHandler<Object> w2;
+    private final EventHandler<Object> h2;
+    private final HandlerList.WrappedHandler<Object> w3;
+    private final EventHandler<Object> h3;
+    private final HandlerList.WrappedHandler<Object> w4;
+    private final EventHandler<Object> h4;
+    private final HandlerList.WrappedHandler<Object> w5;
+    private final EventHandler<Object> h5;
+    private final HandlerList.WrappedHandler<Object> w6;
+    private final EventHandler<Object> h6;
+    private final HandlerList.WrappedHandler<Object> w7;
+    private final EventHandler<Object> h7;
+
+    @SuppressWarnings("unchecked")
+    CompiledNode(HandlerList<?> list, HandlerList.WrappedHandler<?>[] slots, CompiledDispatch.Dispatcher next) {
+        this.list = (HandlerList<Object>) list;
+        this.next = next;
+        this.w0 = slot(slots, 0);
+        this.h0 = w0 == null ? null : w0.handler;
+        this.w1 = slot(slots, 1);
+        this.h1 = w1 == null ? null : w1.handler;
+        this.w2 = slot(slots, 2);
+        this.h2 = w2 == null ? null : w2.handler;
+        this.w3 = slot(slots, 3);
+        this.h3 = w3 == null ? null : w3.handler;
+        this.w4 = slot(slots, 4);
+        this.h4 = w4 == null ? null : w4.handler;
+        this.w5 = slot(slots, 5);
+        this.h5 = w5 == null ? null : w5.handler;
+        this.w6 = slot(slots, 6);
+        this.h6 = w6 == null ? null : w6.handler;
+        this.w7 = slot(slots, 7);
+        this.h7 = w7 == null ? null : w7.handler;
+    }
+
+    @Override
+    public void invoke(Object event) {
+
+        if(h0 == null) return;
+        if(!HandlerList.isSkipped(w0, event)) {
+            try {
+                h0.invoke(event);
+                list.handleSuccess(w0, null, 0L);
+            } catch (Throwable th) {
+                list.handleFailure(w0, th);
+            }
+        }
+
+        if(h1 == null) return;
+        if(!HandlerList.isSkipped(w1, event)) {
+            try {
+                h1.invoke(event);
+                list.handleSuccess(w1, null, 0L);
+            } catch (Throwable th) {
+                list.handleFailure(w1, th);
+            }
+        }
+
+        if(h2 == null) return;
+        if(!HandlerList.isSkipped(w2, event)) {
+            try {
+                h2.invoke(event);
+                list.handleSuccess(w2, null, 0L);
+            } catch (Throwable th) {
+                list.handleFailure(w2, th);
+            }
+        }
+
+        if(h3 == null) return;
+        if(!HandlerList.isSkipped(w3, event)) {
+            try {
+                h3.invoke(event);
+                list.handleSuccess(w3, null, 0L);
+            } catch (Throwable th) {
+                list.handleFailure(w3, th);
+            }
+        }
+
+        if(h4 == null) return;
+        if(!HandlerList.isSkipped(w4, event)) {
+            try {
+                h4.invoke(event);
+                list.handleSuccess(w4, null, 0L);
+            } catch (Throwable th) {
+                list.handleFailure(w4, th);
+            }
+        }
+
+        if(h5 == null) return;
+        if(!HandlerList.isSkipped(w5, event)) {
+            try {
+                h5.invoke(event);
+                list.handleSuccess(w5, null, 0L);
+            } catch (Throwable th) {
+                list.handleFailure(w5, th);
+            }
+        }
+
+        if(h6 == null) return;
+        if(!HandlerList.isSkipped(w6, event)) {
+            try {
+                h6.invoke(event);
+                list.handleSuccess(w6, null, 0L);
+            } catch (Throwable th) {
+                list.handleFailure(w6, th);
+            }
+        }
+
+        if(h7 == null) return;
+        if(!HandlerList.isSkipped(w7, event)) {
+            try {
+                h7.invoke(event);
+                list.handleSuccess(w7, null, 0L);
+            } catch (Throwable th) {
+                list.handleFailure(w7, th);
+            }
+        }
+
+        if(next != null) next.invoke(event);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HandlerList.WrappedHandler<Object> slot(HandlerList.WrappedHandler<?>[] slots, int index) {
+        return index < slots.length ? (HandlerList.WrappedHandler<Object>) slots[index] : null;
+    }
+
+}
@@ -1,5 +1,7 @@
 package org.wallentines.midnightlib.event;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.concurrent.*;
 
 /**
@@ -8,27 +10,326 @@ import java.util.concurrent.*;
  */
 public class ConcurrentHandlerList<T> extends HandlerList<T> {
 
+    /**
+     * Returned for events with no work to do, so they do not allocate a future
+     */
+    private static final CompletableFuture<Void> COMPLETED = new CompletedFuture();
+
     private final Executor executor;
+    private final boolean tiered;
+    private final int batchParallelism;
+    private final long deadlineNanos;
+
+    private volatile Tiers<T> tiers;
 
+    /**
+     * Creates a handler list which runs all handlers in parallel, regardless of priority
+     * @param executor The executor to run handlers on
+     */
     public ConcurrentHandlerList(Executor executor) {
+        this(executor, false);
+    }
+
+    /**
+     * Creates a handler list which runs handlers in parallel
+     * @param executor The executor to run handlers on
+     * @param tiered Whether handlers should be grouped by priority. If true, handlers with the same priority run in
+     *               parallel, but each group will only start once all handlers with lower priorities have finished
+     */
+    public ConcurrentHandlerList(Executor executor, boolean tiered) {
+        this(executor, tiered, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a handler list which runs handlers in parallel
+     * @param executor The executor to run handlers on
+     * @param tiered Whether handlers should be grouped by priority. If true, handlers with the same priority run in
+     *               parallel, but each group will only start once all handlers with lower priorities have finished
+     * @param batchParallelism The maximum number of tasks a batch of events will be split into by
+     *                         {@link #invokeAllAsync(Collection) invokeAllAsync}
+     */
+    public ConcurrentHandlerList(Executor executor, boolean tiered, int batchParallelism) {
+        this(executor, tiered, batchParallelism, null);
+    }
+
+    /**
+     * Creates a handler list which runs handlers in parallel
+     * @param executor The executor to run handlers on
+     * @param tiered Whether handlers should be grouped by priority. If true, handlers with the same priority run in
+     *               parallel, but each group will only start once all handlers with lower priorities have finished
+     * @param batchParallelism The maximum number of tasks a batch of events will be split into by
+     *                         {@link #invokeAllAsync(Collection) invokeAllAsync}
+     * @param deadline How long each handler may run before it is abandoned, or null to wait indefinitely. The deadline
+     *                 starts when the handler starts running. Abandoned handlers are not interrupted, but the event
+     *                 will no longer wait for them to finish, and a {@link TimeoutException} is reported to the list's
+     *                 {@link FailurePolicy} in their place. Whatever they do after their deadline is ignored.
+     *                 Deadlines do not apply to batches
+     */
+    public ConcurrentHandlerList(Executor executor, boolean tiered, int batchParallelism, Duration deadline) {
+        if(batchParallelism < 1) throw new IllegalArgumentException("Batch parallelism must be at least 1!");
+        if(deadline != null && (deadline.isNegative() || deadline.isZero())) throw new IllegalArgumentException("Handler deadline must be positive!");
         this.executor = executor;
+        this.tiered = tiered;
+        this.batchParallelism = batchParallelism;
+        this.deadlineNanos = deadline == null ? 0L : deadline.toNanos();
+    }
+
+    /**
+     * Creates a handler list which runs each handler on its own virtual thread. Handlers which block, such as those
+     * which perform I/O, will not occupy a platform thread while they wait.
+     * @param tiered Whether handlers should be grouped by priority. If true, handlers with the same priority run in
+     *               parallel, but each group will only start once all handlers with lower priorities have finished
+     * @param deadline How long each handler may run before it is abandoned, or null to wait indefinitely
+     * @return A new handler list
+     * @param <T> The type of event to handle
+     */
+    public static <T> ConcurrentHandlerList<T> virtual(boolean tiered, Duration deadline) {
+        return new ConcurrentHandlerList<>(VirtualThreads.EXECUTOR, tiered, Runtime.getRuntime().availableProcessors(), deadline);
     }
 
     public void invoke(T event) {
         invokeAsync(event).join();
     }
 
+    @Override
+    public void invokeAll(Collection<? extends T> events) {
+        invokeAllAsync(events).join();
+    }
+
+    @Override
+    public void invokeAll(T[] events, int start, int end) {
+        invokeAllAsync(events, start, end).join();
+    }
+
+    /**
+     * Invokes an event on the executor
+     * @param event The event to invoke
+     * @return A future which completes once all handlers have finished. If there are no handlers, a shared,
+     *         already-completed future is returned, which cannot be completed with a different result
+     */
     public CompletableFuture<Void> invokeAsync(T event) {
         clearExpiredHandlers();
-        if(handlers.isEmpty()) {
-            CompletableFuture.completedFuture(null);
+        WrappedHandler<T>[] snapshot = handlers;
+        if(snapshot.length == 0) {
+            return COMPLETED;
+        }
+
+        if(!tiered) {
+            return runAll(snapshot, 0, snapshot.length, event);
+        }
+
+        int[] bounds = getTiers(snapshot);
+        CompletableFuture<Void> out = runAll(snapshot, bounds[0], bounds[1], event);
+        for(int i = 1 ; i < bounds.length - 1 ; i++) {
+            int start = bounds[i];
+            int end = bounds[i + 1];
+            out = out.thenCompose(v -> runAll(snapshot, start, end, event));
+        }
+        return out;
+    }
+
+    /**
+     * Invokes a batch of events on the executor. The batch is split into contiguous slices, and each slice is
+     * dispatched to all handlers, in priority order, by a single task.
+     * @param events The events to invoke
+     * @return A future which completes once all slices have been handled
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Void> invokeAllAsync(Collection<? extends T> events) {
+        return invokeAllAsync((T[]) events.toArray());
+    }
+
+    /**
+     * Invokes a batch of events on the executor. The batch is split into contiguous slices, and each slice is
+     * dispatched to all handlers, in priority order, by a single task.
+     * @param events The events to invoke
+     * @return A future which completes once all slices have been handled
+     */
+    public CompletableFuture<Void> invokeAllAsync(T[] events) {
+        return invokeAllAsync(events, 0, events.length);
+    }
+
+    /**
+     * Invokes a range of a batch of events on the executor. The range is split into contiguous slices, and each slice
+     * is dispatched to all handlers, in priority order, by a single task.
+     * @param events The events to invoke
+     * @param start The index of the first event to invoke
+     * @param end The index after the last event to invoke
+     * @return A future which completes once all slices have been handled
+     */
+    public CompletableFuture<Void> invokeAllAsync(T[] events, int start, int end) {
+        clearExpiredHandlers();
+        WrappedHandler<T>[] snapshot = handlers;
+        int count = end - start;
+        if(snapshot.length == 0 || count <= 0) {
+            return COMPLETED;
+        }
+
+        int sliceSize = (count + batchParallelism - 1) / batchParallelism;
+        int slices = (count + sliceSize - 1) / sliceSize;
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[slices];
+        for(int i = 0 ; i < slices ; i++) {
+            int sliceStart = start + i * sliceSize;
+            int sliceEnd = Math.min(end, sliceStart + sliceSize);
+            futures[i] = CompletableFuture.runAsync(() -> invokeAll(snapshot, events, sliceStart, sliceEnd), executor);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    private CompletableFuture<Void> runAll(WrappedHandler<T>[] snapshot, int start, int end, T event) {
+
+        if(end - start == 1) {
+            return run(snapshot[start], event);
+        }
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[end - start];
+        for(int i = start ; i < end ; i++) {
+            futures[i - start] = run(snapshot[i], event);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    private CompletableFuture<Void> run(WrappedHandler<T> handler, T event) {
+
+        if(deadlineNanos == 0L) {
+            return CompletableFuture.runAsync(() -> dispatch(handler, event), executor);
+        }
+
+        // Completed either by the handler or by the deadline, whichever comes first
+        CompletableFuture<Void> out = new CompletableFuture<>();
+        executor.execute(() -> {
+            if(isSkipped(handler, event)) {
+                out.complete(null);
+                return;
+            }
+
+            // The deadline starts once the handler runs, so time spent waiting for the executor does not count
+            ScheduledFuture<?> timeout = Deadlines.TIMER.schedule(() -> {
+                if(out.complete(null)) {
+                    handleFailure(handler, new TimeoutException("Event handler did not finish within "
+                            + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + " ms and was abandoned!"));
+                }
+            }, deadlineNanos, TimeUnit.NANOSECONDS);
+
+            HandlerMetrics metrics = isInstrumented() ? handler.metrics : null;
+            long start = metrics == null ? 0L : System.nanoTime();
+            Throwable failure = null;
+            try {
+                handler.handler.invoke(event);
+            } catch (Throwable th) {
+                failure = th;
+            }
+
+            if(out.complete(null)) {
+                timeout.cancel(false);
+                if(failure == null) {
+                    handleSuccess(handler, metrics, start);
+                } else {
+                    handleFailure(handler, failure, metrics, start);
+                }
+            } else if(metrics != null) {
+                // Already reported as a timeout, so finishing late does not reset the handler's failure count
+                metrics.record(System.nanoTime() - start, true);
+            }
+        });
+        return out;
+    }
+
+    private void dispatch(WrappedHandler<T> handler, T event) {
+        if(isSkipped(handler, event)) return;
+        if(isInstrumented()) {
+            handleInstrumented(handler, event);
+        } else {
+            handle(handler, event);
+        }
+    }
+
+    /**
+     * Gets the indices at which each priority tier of the given snapshot starts, followed by the snapshot length.
+     * These are computed once per snapshot.
+     * @param snapshot The current handler snapshot
+     * @return The tier boundaries
+     */
+    private int[] getTiers(WrappedHandler<T>[] snapshot) {
+
+        Tiers<T> current = tiers;
+        if(current != null && current.snapshot == snapshot) {
+            return current.bounds;
+        }
+
+        int count = 1;
+        for(int i = 1 ; i < snapshot.length ; i++) {
+            if(snapshot[i].priority != snapshot[i - 1].priority) count++;
+        }
+
+        int[] bounds = new int[count + 1];
+        int tier = 1;
+        for(int i = 1 ; i < snapshot.length ; i++) {
+            if(snapshot[i].priority != snapshot[i - 1].priority) bounds[tier++] = i;
+        }
+        bounds[count] = snapshot.length;
+
+        tiers = new Tiers<>(snapshot, bounds);
+        return bounds;
+    }
+
+    /**
+     * A completed future which ignores attempts to change its result, so it can safely be shared between callers
+     */
+    private static final class CompletedFuture extends CompletableFuture<Void> {
+
+        CompletedFuture() {
+            super.complete(null);
+        }
+
+        @Override
+        public boolean complete(Void value) {
+            return false;
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable ex) {
+            return false;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
         }
 
-        return CompletableFuture.allOf(handlers.stream()
-                .map(wh -> CompletableFuture.runAsync(() -> handle(wh.handler, event), executor))
-                .toArray(CompletableFuture[]::new)
-        );
+        @Override
+        public void obtrudeValue(Void value) { }
+
+        @Override
+        public void obtrudeException(Throwable ex) { }
+    }
 
+    private static class VirtualThreads {
+        static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    private static class Deadlines {
+        static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Event Handler Deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            TIMER.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    private static class Tiers<T> {
+
+        final WrappedHandler<T>[] snapshot;
+        final int[] bounds;
+
+        Tiers(WrappedHandler<T>[] snapshot, int[] bounds) {
+            this.snapshot = snapshot;
+            this.bounds = bounds;
+        }
     }
 
 }
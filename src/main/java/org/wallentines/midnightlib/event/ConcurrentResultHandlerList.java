@@ -0,0 +1,150 @@
+package org.wallentines.midnightlib.event;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * A result handler list which runs its handlers concurrently. Without a short-circuit predicate, results are combined
+ * in parallel as a tree as they complete. Adjacent results are always combined with each other, so because the reducer
+ * is associative, the combined result is the same as if the handlers had been run in priority order.
+ * <br/>
+ * With a short-circuit predicate, results are instead combined in priority order as they become available, and the
+ * combined result completes as soon as the results of the first handlers combine to an absorbing result, without
+ * waiting for the remaining handlers. An absorbing result from a later handler does not complete it early, since the
+ * reducer need not be commutative, so an earlier handler's result could still change the outcome.
+ * @param <T> The type of event to handle. This should be read-only or otherwise thread safe.
+ * @param <R> The type of result the handlers produce
+ */
+public class ConcurrentResultHandlerList<T, R> extends ResultHandlerList<T, R> {
+
+    private final Executor executor;
+
+    /**
+     * Creates a concurrent result handler list which always waits for every handler
+     * @param executor The executor to run handlers on
+     * @param identity The result of an event with no handlers
+     * @param reducer An associative function which combines two results
+     */
+    public ConcurrentResultHandlerList(Executor executor, R identity, BinaryOperator<R> reducer) {
+        this(executor, identity, reducer, null);
+    }
+
+    /**
+     * Creates a concurrent result handler list
+     * @param executor The executor to run handlers on
+     * @param identity The result of an event with no handlers
+     * @param reducer An associative function which combines two results
+     * @param shortCircuit A predicate which determines whether a result is absorbing, or null if no result is
+     */
+    public ConcurrentResultHandlerList(Executor executor, R identity, BinaryOperator<R> reducer, Predicate<? super R> shortCircuit) {
+        super(identity, reducer, shortCircuit);
+        this.executor = executor;
+    }
+
+    /**
+     * Invokes an event, and waits for the combined result of its handlers
+     * @param event The event to invoke
+     * @return The combined result
+     */
+    @Override
+    public R invoke(T event) {
+        return invokeAsync(event).join();
+    }
+
+    /**
+     * Invokes an event on the executor
+     * @param event The event to invoke
+     * @return A future which completes with the combined result
+     */
+    public CompletableFuture<R> invokeAsync(T event) {
+
+        Entry<ResultHandler<T, R>>[] snapshot = getHandlers();
+        if(snapshot.length == 0) return CompletableFuture.completedFuture(identity);
+
+        if(shortCircuit != null) return invokeInOrder(snapshot, event);
+
+        CompletableFuture<R>[] level = newLevel(snapshot.length);
+        for(int i = 0 ; i < snapshot.length ; i++) {
+            Entry<ResultHandler<T, R>> entry = snapshot[i];
+            level[i] = CompletableFuture.supplyAsync(() -> call(entry, event), executor);
+        }
+
+        // Combine adjacent pairs until only the root remains, so results are folded in handler order
+        while(level.length > 1) {
+            CompletableFuture<R>[] next = newLevel((level.length + 1) / 2);
+            for(int i = 0 ; i < next.length ; i++) {
+                int left = i * 2;
+                next[i] = left + 1 < level.length
+                        ? level[left].thenCombine(level[left + 1], reducer)
+                        : level[left];
+            }
+            level = next;
+        }
+
+        return level[0];
+    }
+
+    private CompletableFuture<R> invokeInOrder(Entry<ResultHandler<T, R>>[] snapshot, T event) {
+
+        PrefixFold fold = new PrefixFold(snapshot.length);
+        for(int i = 0 ; i < snapshot.length ; i++) {
+            Entry<ResultHandler<T, R>> entry = snapshot[i];
+            int index = i;
+            CompletableFuture.supplyAsync(() -> call(entry, event), executor)
+                    .whenComplete((result, th) -> fold.accept(index, result, th));
+        }
+        return fold.out;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <R> CompletableFuture<R>[] newLevel(int size) {
+        return (CompletableFuture<R>[]) new CompletableFuture[size];
+    }
+
+    /**
+     * Combines results in priority order as they arrive. Results which arrive before all earlier results are held
+     * until they can be combined.
+     */
+    private class PrefixFold {
+
+        final CompletableFuture<R> out = new CompletableFuture<>();
+        private final Object[] results;
+        private final boolean[] received;
+        private int next;
+        private R prefix = identity;
+
+        PrefixFold(int size) {
+            this.results = new Object[size];
+            this.received = new boolean[size];
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void accept(int index, R result, Throwable th) {
+            if(out.isDone()) return;
+            if(th != null) {
+                out.completeExceptionally(th);
+                return;
+            }
+
+            results[index] = result;
+            received[index] = true;
+            try {
+                while(next < results.length && received[next]) {
+                    prefix = reducer.apply(prefix, (R) results[next]);
+                    results[next++] = null;
+                    if(isAbsorbing(prefix)) {
+                        out.complete(prefix);
+                        return;
+                    }
+                }
+            } catch (Throwable ex) {
+                out.completeExceptionally(ex);
+                return;
+            }
+            if(next == results.length) out.complete(prefix);
+        }
+    }
+
+}
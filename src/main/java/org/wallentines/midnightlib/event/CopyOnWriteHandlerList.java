@@ -0,0 +1,501 @@
+package org.wallentines.midnightlib.event;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The handler storage shared by every handler list. Handlers are kept in an immutable snapshot which is replaced,
+ * never modified, whenever the set of handlers changes, so invoking an event never takes a lock. Listeners are weakly
+ * referenced unless they are registered strongly, and per-handler metrics can be recorded.
+ * <br/>
+ * Subclasses provide the {@code invoke} methods for their handler type, and decide how handlers are wrapped.
+ * @param <H> The type of handler stored in the list
+ * @param <E> The type handlers are wrapped in
+ */
+abstract class CopyOnWriteHandlerList<H, E extends CopyOnWriteHandlerList.Entry<H>> {
+
+    /**
+     * An immutable snapshot of the registered handlers, in the order they are invoked. By default, this is sorted by
+     * priority, and handlers with equal priorities are kept in registration order. This array is replaced, never
+     * modified, whenever the set of handlers changes.
+     */
+    protected volatile E[] handlers;
+
+    /**
+     * Receives the listener references of handlers whose listeners have been garbage-collected. Subclasses which
+     * create their own entries must register them with this queue.
+     */
+    protected final ReferenceQueue<Object> expired = new ReferenceQueue<>();
+
+    private final E[] empty;
+    private final Object lock = new Object();
+
+    /**
+     * Whether per-handler metrics should be recorded. This is read once per invocation, so when it is disabled, the
+     * only cost is a single, predictable branch.
+     */
+    private volatile boolean instrumented;
+
+    private volatile FailurePolicy failurePolicy = FailurePolicy.LOG;
+
+    /**
+     * Creates an empty list
+     * @param empty An empty snapshot. Every snapshot is copied from this, so it determines the array type
+     */
+    protected CopyOnWriteHandlerList(E[] empty) {
+        this.empty = empty;
+        this.handlers = empty;
+    }
+
+    /**
+     * Registers a new handler with the given listener
+     * @param listener The registered listener. This can be anything, but if it is garbage-collected, the handler will
+     *                 be removed from the list
+     * @param handler The handler to call when an event is invoked
+     * @return A subscription which can be used to unregister the handler
+     */
+    public Subscription register(Object listener, H handler) {
+        return register(listener, 50, handler);
+    }
+
+    /**
+     * Registers a new handler with the given listener and priority
+     * @param listener The registered listener. This can be anything, but if it is garbage-collected, the handler will
+     *                 be removed from the list
+     * @param priority The priority of the handler. Handlers with lower priorities are called earlier
+     * @param handler The handler to call when an event is invoked
+     * @return A subscription which can be used to unregister the handler
+     */
+    public Subscription register(Object listener, int priority, H handler) {
+        return add(createEntry(listener, priority, handler, expired));
+    }
+
+    /**
+     * Registers a new handler which strongly references its listener
+     * @param listener The registered listener. This can be anything, and will not be garbage-collected while the
+     *                 handler is registered
+     * @param handler The handler to call when an event is invoked
+     * @return A subscription which can be used to unregister the handler
+     * @see #registerStrong(Object, int, Object)
+     */
+    public Subscription registerStrong(Object listener, H handler) {
+        return registerStrong(listener, 50, handler);
+    }
+
+    /**
+     * Registers a new handler which strongly references its listener. No weak reference is allocated for the handler,
+     * and it is never checked for expiry, so it stays registered until it is explicitly unregistered, through its
+     * subscription or {@link #unregisterAll(Object)}. This suits long-lived listeners, such as plugins or singletons,
+     * which would never be collected anyway.
+     * @param listener The registered listener. This can be anything, and will not be garbage-collected while the
+     *                 handler is registered
+     * @param priority The priority of the handler. Handlers with lower priorities are called earlier
+     * @param handler The handler to call when an event is invoked
+     * @return A subscription which can be used to unregister the handler
+     */
+    public Subscription registerStrong(Object listener, int priority, H handler) {
+        return add(createEntry(listener, priority, handler, null));
+    }
+
+    /**
+     * Wraps a handler registered through {@link #register(Object, int, Object) register} or
+     * {@link #registerStrong(Object, int, Object) registerStrong}
+     * @param listener The registered listener
+     * @param priority The priority of the handler
+     * @param handler The handler to wrap
+     * @param queue The queue to register the listener's weak reference with, or null if the listener should be
+     *              strongly referenced
+     * @return A new entry
+     */
+    protected abstract E createEntry(Object listener, int priority, H handler, ReferenceQueue<Object> queue);
+
+    /**
+     * Adds an already wrapped handler to the list
+     * @param entry The handler to add
+     * @return A subscription which can be used to unregister the handler
+     */
+    protected Subscription add(E entry) {
+        synchronized (lock) {
+            if(instrumented) {
+                entry.metrics = new HandlerMetrics();
+            }
+            handlers = insert(handlers, entry);
+        }
+        return new EntrySubscription(entry);
+    }
+
+    /**
+     * Creates a new snapshot containing every handler in the current snapshot, and the given handler. By default, the
+     * handler is inserted after all handlers with a lower or equal priority. This is called while holding the list's
+     * lock, and if it throws an exception, the handler is not registered.
+     * @param current The current snapshot, which must not be modified
+     * @param entry The handler to insert
+     * @return A new snapshot, in the order handlers should be invoked
+     */
+    protected E[] insert(E[] current, E entry) {
+
+        int index = current.length;
+        while(index > 0 && current[index - 1].priority > entry.priority) {
+            index--;
+        }
+
+        E[] out = Arrays.copyOf(current, current.length + 1);
+        System.arraycopy(current, index, out, index + 1, current.length - index);
+        out[index] = entry;
+        return out;
+    }
+
+    /**
+     * Removes a single handler. By default, only the handlers with the same priority are searched.
+     * @param entry The handler to remove
+     * @return Whether the handler was registered
+     */
+    protected boolean remove(E entry) {
+        if(indexOf(handlers, entry) == -1) return false;
+        synchronized (lock) {
+            E[] current = handlers;
+            int index = indexOf(current, entry);
+            if(index == -1) return false;
+
+            entry.release();
+            if(current.length == 1) {
+                handlers = empty;
+            } else {
+                E[] out = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, index + 1, out, index, current.length - index - 1);
+                handlers = out;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Rebuilds the handler snapshot without the handlers matching the given predicate. The snapshot is only replaced,
+     * and the lock is only taken, if at least one handler matches.
+     * @param predicate The predicate which determines which handlers to remove
+     */
+    protected void removeIf(Predicate<E> predicate) {
+        if(!anyMatch(handlers, predicate)) return;
+        synchronized (lock) {
+            E[] current = handlers;
+            E[] out = null;
+            int count = 0;
+
+            for(int i = 0 ; i < current.length ; i++) {
+                E entry = current[i];
+                if(predicate.test(entry)) {
+                    entry.release();
+                    if(out == null) {
+                        out = Arrays.copyOf(current, current.length);
+                        count = i;
+                    }
+                } else if(out != null) {
+                    out[count++] = entry;
+                }
+            }
+
+            if(out != null) {
+                handlers = count == 0 ? empty : Arrays.copyOf(out, count);
+            }
+        }
+    }
+
+    /**
+     * Finds the index of a handler in a snapshot. Subclasses which override {@link #insert(Entry[], Entry) insert} so
+     * snapshots are no longer sorted by priority must also override this.
+     * @param snapshot The snapshot to search
+     * @param entry The handler to find
+     * @return The index of the handler, or -1 if it is not in the snapshot
+     */
+    protected int indexOf(E[] snapshot, E entry) {
+
+        // Find the first handler with the same priority, then search only the handlers with that priority
+        int low = 0;
+        int high = snapshot.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(snapshot[mid].priority < entry.priority) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for(int i = low ; i < snapshot.length && snapshot[i].priority == entry.priority ; i++) {
+            if(snapshot[i] == entry) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Determines whether there are any handlers registered
+     * @return Whether there are no registered handlers
+     */
+    public boolean isEmpty() {
+        return handlers.length == 0;
+    }
+
+    /**
+     * Unregisters all handlers
+     */
+    public void unregisterAll() {
+        synchronized (lock) {
+            for(E entry : handlers) {
+                entry.release();
+            }
+            handlers = empty;
+        }
+    }
+
+    /**
+     * Unregisters all handlers with the given listener
+     * @param listener The listener to lookup
+     */
+    public void unregisterAll(Object listener) {
+        removeIf(entry -> entry.getListener() == listener);
+    }
+
+    /**
+     * Removes all handlers which have been garbage-collected. Collected listeners are reported through a
+     * {@link ReferenceQueue}, so this is a single poll unless a listener has actually been collected since the last call.
+     * Strongly referenced handlers are never enqueued, so they are never examined here.
+     */
+    protected void clearExpiredHandlers() {
+
+        Reference<?> ref = expired.poll();
+        if(ref == null) return;
+
+        Set<Entry<?>> dead = Collections.newSetFromMap(new IdentityHashMap<>());
+        while(ref != null) {
+            dead.add(((ListenerReference) ref).entry);
+            ref = expired.poll();
+        }
+        removeExpired(dead);
+    }
+
+    /**
+     * Removes handlers whose listeners have been garbage-collected. Subclasses which register handlers from other
+     * lists with this list's {@link #expired queue} can override this to remove them from their own lists.
+     * @param dead The handlers whose listeners have been collected
+     */
+    protected void removeExpired(Set<Entry<?>> dead) {
+        removeIf(dead::contains);
+    }
+
+    /**
+     * Determines whether per-handler metrics are being recorded
+     * @return Whether instrumentation is enabled
+     */
+    public boolean isInstrumented() {
+        return instrumented;
+    }
+
+    /**
+     * Enables or disables per-handler metrics. Metrics recorded before instrumentation was disabled are kept, and
+     * will be added to if it is enabled again.
+     * @param instrumented Whether instrumentation should be enabled
+     */
+    public void setInstrumented(boolean instrumented) {
+        synchronized (lock) {
+            if(instrumented) {
+                for(E entry : handlers) {
+                    if(entry.metrics == null) entry.metrics = new HandlerMetrics();
+                }
+            }
+            // Written after the metrics, so any thread which observes this also observes them
+            this.instrumented = instrumented;
+        }
+    }
+
+    /**
+     * Gets a snapshot of the metrics of each registered handler, in the order they would be invoked. Handlers which
+     * have never been instrumented are omitted.
+     * @return A list of metrics snapshots
+     */
+    public List<HandlerMetrics.Snapshot> getMetrics() {
+        List<HandlerMetrics.Snapshot> out = new ArrayList<>();
+        for(E entry : handlers) {
+            HandlerMetrics metrics = entry.metrics;
+            if(metrics != null) {
+                out.add(metrics.snapshot(entry.handler, entry.getListener(), entry.priority));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Gets the policy which decides what happens when a handler throws an exception
+     * @return The current failure policy
+     */
+    public FailurePolicy getFailurePolicy() {
+        return failurePolicy;
+    }
+
+    /**
+     * Changes the policy which decides what happens when a handler throws an exception. By default, every exception
+     * is logged with {@link FailurePolicy#LOG}.
+     * @param failurePolicy The new failure policy
+     */
+    public void setFailurePolicy(FailurePolicy failurePolicy) {
+        if(failurePolicy == null) throw new IllegalArgumentException("Failure policy cannot be null!");
+        this.failurePolicy = failurePolicy;
+    }
+
+    /**
+     * Records that a handler returned normally, and resets its consecutive failures
+     * @param entry The handler which was called
+     * @param metrics The handler's metrics, or null if the call was not timed
+     * @param start The {@link System#nanoTime()} the call started at, if it was timed
+     */
+    protected final void handleSuccess(E entry, HandlerMetrics metrics, long start) {
+        if(metrics != null) metrics.record(System.nanoTime() - start, false);
+        if(entry.failures != 0) entry.failures = 0;
+    }
+
+    /**
+     * Records that a handler threw an exception, and reports it to the list's {@link FailurePolicy}
+     * @param entry The handler which was called
+     * @param th The exception which was thrown
+     * @param metrics The handler's metrics, or null if the call was not timed
+     * @param start The {@link System#nanoTime()} the call started at, if it was timed
+     */
+    protected final void handleFailure(E entry, Throwable th, HandlerMetrics metrics, long start) {
+        if(metrics != null) metrics.record(System.nanoTime() - start, true);
+        handleFailure(entry, th);
+    }
+
+    /**
+     * Reports an exception thrown by a registered handler to the list's {@link FailurePolicy}, and unregisters the
+     * handler if the policy requests it
+     * @param entry The handler which threw the exception
+     * @param th The exception which was thrown
+     */
+    protected void handleFailure(E entry, Throwable th) {
+        // Not atomic, so concurrent failures of the same handler may be undercounted
+        int failures = ++entry.failures;
+        if(failurePolicy.onFailure(entry.handler, th, failures)) {
+            remove(entry);
+        }
+    }
+
+    private static <E> boolean anyMatch(E[] snapshot, Predicate<E> predicate) {
+        for(E entry : snapshot) {
+            if(predicate.test(entry)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A registered handler, and the listener it was registered with
+     * @param <H> The type of handler
+     */
+    protected static class Entry<H> {
+
+        /**
+         * A weak reference to the listener, or null if the listener is strongly referenced
+         */
+        final ListenerReference reference;
+
+        /**
+         * The listener, if it is strongly referenced. This is cleared when the handler is removed, so a lingering
+         * subscription does not keep the listener alive.
+         */
+        Object strongListener;
+
+        final int priority;
+        final H handler;
+
+        /**
+         * This handler's metrics, or null if it has never been instrumented. This is only written while holding the
+         * list's lock, before instrumentation is enabled or the handler is published.
+         */
+        HandlerMetrics metrics;
+
+        /**
+         * The number of times in a row this handler has thrown an exception
+         */
+        int failures;
+
+        /**
+         * Creates an entry
+         * @param listener The registered listener
+         * @param priority The priority of the handler
+         * @param handler The handler to wrap
+         * @param queue The queue to register the listener's weak reference with, or null if the listener should be
+         *              strongly referenced
+         */
+        Entry(Object listener, int priority, H handler, ReferenceQueue<Object> queue) {
+            if(queue == null) {
+                this.reference = null;
+                this.strongListener = listener;
+            } else {
+                this.reference = new ListenerReference(listener, this, queue);
+            }
+            this.priority = priority;
+            this.handler = handler;
+        }
+
+        /**
+         * Gets the listener this handler was registered with
+         * @return The listener, or null if it has been garbage-collected or the handler has been removed
+         */
+        Object getListener() {
+            return reference == null ? strongListener : reference.get();
+        }
+
+        /**
+         * Releases this handler's listener once the handler has been removed
+         */
+        void release() {
+            if(reference == null) {
+                strongListener = null;
+            } else {
+                reference.clear();
+            }
+        }
+    }
+
+    /**
+     * A handle to a single handler in this list
+     */
+    private class EntrySubscription implements Subscription {
+
+        private final E entry;
+
+        EntrySubscription(E entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void unregister() {
+            remove(entry);
+        }
+
+        @Override
+        public boolean isRegistered() {
+            return indexOf(handlers, entry) != -1;
+        }
+    }
+
+    /**
+     * A weak reference to a listener which remembers the handler it belongs to, so the handler can be found once the
+     * reference is enqueued
+     */
+    private static class ListenerReference extends WeakReference<Object> {
+
+        final Entry<?> entry;
+
+        ListenerReference(Object listener, Entry<?> entry, ReferenceQueue<Object> queue) {
+            super(listener, queue);
+            this.entry = entry;
+        }
+    }
+
+}
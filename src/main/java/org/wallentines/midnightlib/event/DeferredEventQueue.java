@@ -0,0 +1,161 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A queue of events whose handling can be deferred, such as until a chosen point in a server tick. Events may be
+ * posted from any thread, and are invoked on their {@link HandlerList HandlerLists} by whichever thread calls
+ * {@link #drain(long) drain}, in the order they were posted.
+ * <br/>
+ * Each drain runs under a time budget. Events which do not fit in the budget are left in the queue, and are handled
+ * first by the next drain.
+ */
+public class DeferredEventQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    private final ConcurrentLinkedQueue<Deferred> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0L);
+
+    private volatile long lastLagNanos;
+    private volatile int lastDrained;
+
+    /**
+     * Posts an event to be invoked on the given handler list by the next drain
+     * @param handlers The handler list to invoke the event on
+     * @param event The event to invoke
+     * @param <T> The type of event to invoke
+     */
+    public <T> void post(HandlerList<T> handlers, T event) {
+        if(handlers == null || event == null) return;
+        enqueue(new Deferred(handlers, event));
+    }
+
+    /**
+     * Posts an event to be invoked as a global {@link Event} by the next drain
+     * @param event The event to invoke
+     */
+    public void post(Object event) {
+        if(event == null) return;
+        enqueue(new Deferred(null, event));
+    }
+
+    /**
+     * Invokes waiting events until the queue is empty or the time budget is used up. At least one event is always
+     * invoked if the queue is not empty, so the queue makes progress even if a single event exceeds the budget.
+     * @param budget How long to spend invoking events
+     * @return The number of events which were invoked
+     */
+    public int drain(Duration budget) {
+        return drain(budget.toNanos());
+    }
+
+    /**
+     * Invokes waiting events until the queue is empty or the time budget is used up. At least one event is always
+     * invoked if the queue is not empty, so the queue makes progress even if a single event exceeds the budget.
+     * @param budgetNanos How long to spend invoking events, in nanoseconds
+     * @return The number of events which were invoked
+     */
+    public int drain(long budgetNanos) {
+
+        long start = System.nanoTime();
+        long now = start;
+        int drained = 0;
+
+        Deferred deferred;
+        while((drained == 0 || now - start < budgetNanos) && (deferred = queue.poll()) != null) {
+            depth.decrementAndGet();
+
+            long lag = now - deferred.postedNanos;
+            lastLagNanos = lag;
+            maxLagNanos.accumulate(lag);
+
+            try {
+                deferred.invoke();
+            } catch (Throwable th) {
+                LOGGER.error("An exception was thrown while dispatching a deferred event!", th);
+            }
+
+            drained++;
+            now = System.nanoTime();
+        }
+
+        lastDrained = drained;
+        return drained;
+    }
+
+    /**
+     * Gets the number of events waiting to be invoked
+     * @return The depth of the queue
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Gets how long the oldest waiting event has been waiting
+     * @return The age of the oldest event in nanoseconds, or 0 if the queue is empty
+     */
+    public long getOldestAgeNanos() {
+        Deferred oldest = queue.peek();
+        return oldest == null ? 0L : Math.max(0L, System.nanoTime() - oldest.postedNanos);
+    }
+
+    /**
+     * Gets how long the most recently invoked event waited between being posted and being invoked
+     * @return The lag of the last event in nanoseconds
+     */
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    /**
+     * Gets the longest time any event has waited between being posted and being invoked
+     * @return The maximum lag in nanoseconds
+     */
+    public long getMaxLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    /**
+     * Gets the number of events invoked by the most recent drain
+     * @return The number of events in the last drain
+     */
+    public int getLastDrainedCount() {
+        return lastDrained;
+    }
+
+    private void enqueue(Deferred deferred) {
+        depth.incrementAndGet();
+        queue.offer(deferred);
+    }
+
+    private static class Deferred {
+
+        final HandlerList<Object> handlers;
+        final Object event;
+        final long postedNanos = System.nanoTime();
+
+        @SuppressWarnings("unchecked")
+        Deferred(HandlerList<?> handlers, Object event) {
+            this.handlers = (HandlerList<Object>) handlers;
+            this.event = event;
+        }
+
+        void invoke() {
+            if(handlers == null) {
+                Event.invoke(event);
+            } else {
+                handlers.invoke(event);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * A functional interface for handling double events without boxing them
+ */
+public interface DoubleEventHandler {
+
+    /**
+     * Handles an event
+     * @param value The event data
+     */
+    void invoke(double value);
+
+}
@@ -0,0 +1,28 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * A handler list for events which are a single double, such as a measurement or a ratio. Values are passed to
+ * handlers directly, so they never need to be boxed, and invoking a value does not allocate.
+ * <br/>
+ * Handlers are ordered by priority, and are removed when their listeners are garbage-collected, in the same way as a
+ * {@link HandlerList}.
+ */
+public class DoubleHandlerList extends AbstractHandlerList<DoubleEventHandler> {
+
+    /**
+     * Invokes an event
+     * @param value The event data
+     */
+    public void invoke(double value) {
+        for(Entry<DoubleEventHandler> entry : getHandlers()) {
+            long start = begin(entry);
+            try {
+                entry.handler.invoke(value);
+                succeeded(entry, start);
+            } catch (Throwable th) {
+                failed(entry, th, start);
+            }
+        }
+    }
+
+}
@@ -1,13 +1,54 @@
 package org.wallentines.midnightlib.event;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * A static class for invoking global events and registering handlers for them
+ * A static class for invoking global events and registering handlers for them. This class is safe to use from any
+ * number of threads at once.
+ * <br/>
+ * Handlers registered for a class or interface will also receive events of any subtype. When an event is invoked,
+ * handlers registered for its exact class are called first, followed by handlers for each of its superclasses, and
+ * finally handlers for each of its interfaces.
  */
 public final class Event {
 
-    private static final HashMap<Class<?>, HandlerList<?>> EVENTS = new HashMap<>();
+    /**
+     * The dispatch slot for each event class. Slots are created lazily, and are cached by the JVM alongside the class
+     * itself, so looking one up does not require any locking or hashing on our side.
+     */
+    private static final ClassValue<EventSlot> SLOTS = new ClassValue<EventSlot>() {
+        @Override
+        protected EventSlot computeValue(Class<?> type) {
+            return new EventSlot(type);
+        }
+    };
+
+    /**
+     * Incremented whenever a new handler list is created. Each slot remembers the generation its dispatch chain was
+     * computed in, and recomputes it once the generation changes, so slots never need to be tracked globally, and
+     * event classes can still be unloaded.
+     */
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    /**
+     * Every handler list which has been created, used when changing settings for all events
+     */
+    private static final CopyOnWriteArrayList<HandlerList<?>> LISTS = new CopyOnWriteArrayList<>();
+
+    /**
+     * The subscriptions of each listener, used when unregistering a listener from all events
+     */
+    private static final SubscriptionIndex SUBSCRIPTIONS = new SubscriptionIndex();
+
+    private static volatile boolean instrumented;
+    private static volatile FailurePolicy failurePolicy = FailurePolicy.LOG;
 
     /**
      * Registers an event handler for events of the given class
@@ -15,10 +56,11 @@ public final class Event {
      * @param listener The object listening to the event. If this is garbage-collected, the handler will be removed
      * @param handler The handler to run when the event is fired
      * @param <T> The type of event to listen to
+     * @return A subscription which can be used to unregister the handler
      */
-    public static <T> void register(Class<T> ev, Object listener, EventHandler<T> handler) {
+    public static <T> Subscription register(Class<T> ev, Object listener, EventHandler<T> handler) {
 
-        register(ev, listener, 50, handler);
+        return register(ev, listener, 50, handler);
     }
 
     /**
@@ -28,15 +70,87 @@ public final class Event {
      * @param priority The priority of the handler. Handlers with lower priorities will be called first
      * @param handler The handler to run when the event is fired
      * @param <T> The type of event to listen to
+     * @return A subscription which can be used to unregister the handler
      */
-    @SuppressWarnings("unchecked")
-    public static <T> void register(Class<T> ev, Object listener, int priority, EventHandler<T> handler) {
+    public static <T> Subscription register(Class<T> ev, Object listener, int priority, EventHandler<T> handler) {
+
+        return register(ev, listener, priority, false, handler);
+    }
+
+    /**
+     * Registers an event handler for events of the given class, with the given priority
+     * @param ev The type of event to listen to
+     * @param listener The object listening to the event. If this is garbage-collected, the handler will be removed
+     * @param priority The priority of the handler. Handlers with lower priorities will be called first
+     * @param ignoreCancelled Whether the handler should be skipped for events which are {@link Cancellable} and have
+     *                        been cancelled by an earlier handler
+     * @param handler The handler to run when the event is fired
+     * @param <T> The type of event to listen to
+     * @return A subscription which can be used to unregister the handler, or null if the listener or handler is null
+     */
+    public static <T> Subscription register(Class<T> ev, Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler) {
 
-        if(listener == null || handler == null) return;
+        if(listener == null || handler == null) return null;
+
+        Subscription subscription = SLOTS.get(ev).<T>getOrCreate().register(listener, priority, ignoreCancelled, handler);
+        return SUBSCRIPTIONS.add(listener, subscription);
+
+    }
+
+    /**
+     * Registers an event handler for events of the given class which strongly references its listener
+     * @param ev The type of event to listen to
+     * @param listener The object listening to the event. This will not be garbage-collected while the handler is
+     *                 registered
+     * @param handler The handler to run when the event is fired
+     * @param <T> The type of event to listen to
+     * @return A subscription which can be used to unregister the handler, or null if the listener or handler is null
+     * @see HandlerList#registerStrong(Object, int, boolean, EventHandler)
+     */
+    public static <T> Subscription registerStrong(Class<T> ev, Object listener, EventHandler<T> handler) {
+
+        return registerStrong(ev, listener, 50, false, handler);
+    }
+
+    /**
+     * Registers an event handler for events of the given class which strongly references its listener. The handler
+     * skips weak-reference tracking entirely, and stays registered until it is explicitly unregistered.
+     * @param ev The type of event to listen to
+     * @param listener The object listening to the event. This will not be garbage-collected while the handler is
+     *                 registered
+     * @param priority The priority of the handler. Handlers with lower priorities will be called first
+     * @param ignoreCancelled Whether the handler should be skipped for events which are {@link Cancellable} and have
+     *                        been cancelled by an earlier handler
+     * @param handler The handler to run when the event is fired
+     * @param <T> The type of event to listen to
+     * @return A subscription which can be used to unregister the handler, or null if the listener or handler is null
+     * @see HandlerList#registerStrong(Object, int, boolean, EventHandler)
+     */
+    public static <T> Subscription registerStrong(Class<T> ev, Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler) {
+
+        if(listener == null || handler == null) return null;
+
+        Subscription subscription = SLOTS.get(ev).<T>getOrCreate().registerStrong(listener, priority, ignoreCancelled, handler);
+        return SUBSCRIPTIONS.addStrong(listener, subscription);
+
+    }
+
+    /**
+     * Registers every method of the given listener which is annotated with {@link Subscribe} as a handler for events
+     * of its parameter type. The listener's class is only scanned the first time it is registered. Like handlers which
+     * call the listener's methods directly, registered methods keep the listener alive, so it should be unregistered
+     * with {@link #unregisterAll(Object)} once it is no longer needed.
+     * @param listener The object listening to events
+     * @throws IllegalArgumentException If an annotated method is static or does not have exactly one parameter
+     */
+    public static void register(Object listener) {
 
-        HandlerList<T> list = (HandlerList<T>) EVENTS.computeIfAbsent(ev, k -> new HandlerList<T>());
-        list.register(listener, priority, handler);
+        if(listener == null) return;
 
+        for(SubscriberMethods.SubscriberMethod method : SubscriberMethods.get(listener.getClass())) {
+            Subscription subscription = SLOTS.get(method.eventType).getOrCreate().register(listener, method.priority, method.ignoreCancelled, method.bind(listener));
+            SUBSCRIPTIONS.add(listener, subscription);
+        }
     }
 
     /**
@@ -49,22 +163,67 @@ public final class Event {
 
         if(event == null) return;
 
-        HandlerList<T> handlers = (HandlerList<T>) EVENTS.get(event.getClass());
-        if(handlers == null) return;
+        HandlerList<?>[] chain = SLOTS.get(event.getClass()).getChain();
 
-        handlers.invoke(event);
+        // Fast path for events nobody is listening to
+        if(chain.length == 0) return;
+
+        for(HandlerList<?> handlers : chain) {
+            if(!handlers.isEmpty()) {
+                ((HandlerList<T>) handlers).invoke(event);
+            }
+        }
 
     }
 
     /**
-     * Unregisters all event handlers with the given listener
+     * Enables or disables per-handler metrics for all global events, including those which have not been registered
+     * yet
+     * @param instrumented Whether instrumentation should be enabled
+     * @see HandlerList#setInstrumented(boolean)
+     */
+    public static void setInstrumented(boolean instrumented) {
+        Event.instrumented = instrumented;
+        for(HandlerList<?> l : LISTS) {
+            l.setInstrumented(instrumented);
+        }
+    }
+
+    /**
+     * Changes the policy which decides what happens when a handler of any global event throws an exception, including
+     * events which have not been registered yet
+     * @param failurePolicy The new failure policy
+     * @see HandlerList#setFailurePolicy(FailurePolicy)
+     */
+    public static void setFailurePolicy(FailurePolicy failurePolicy) {
+        if(failurePolicy == null) throw new IllegalArgumentException("Failure policy cannot be null!");
+        Event.failurePolicy = failurePolicy;
+        for(HandlerList<?> l : LISTS) {
+            l.setFailurePolicy(failurePolicy);
+        }
+    }
+
+    /**
+     * Gets a snapshot of the metrics of each handler registered for exactly the given event type
+     * @param event The type of event to lookup
+     * @return A list of metrics snapshots, which will be empty if there are no handlers or instrumentation has never
+     *         been enabled
+     * @see HandlerList#getMetrics()
+     */
+    public static List<HandlerMetrics.Snapshot> getMetrics(Class<?> event) {
+        HandlerList<?> handlers = SLOTS.get(event).get();
+        return handlers == null ? Collections.emptyList() : handlers.getMetrics();
+    }
+
+    /**
+     * Unregisters all event handlers with the given listener. Each listener's subscriptions are indexed when they are
+     * registered, so this only visits the listener's own handlers.
      * @param listener The listener to lookup
      */
     public static void unregisterAll(Object listener) {
 
-        for(HandlerList<?> l : EVENTS.values()) {
-            l.unregisterAll(listener);
-        }
+        if(listener == null) return;
+        SUBSCRIPTIONS.unregisterAll(listener);
     }
 
     /**
@@ -73,8 +232,113 @@ public final class Event {
      */
     public static void unregisterAll(Class<?> event) {
 
-        if(EVENTS.containsKey(event)) {
-            EVENTS.get(event).unregisterAll();
+        HandlerList<?> handlers = SLOTS.get(event).get();
+        if(handlers != null) {
+            handlers.unregisterAll();
+            SUBSCRIPTIONS.sweep();
+        }
+    }
+
+
+    private static class EventSlot {
+
+        private static final HandlerList<?>[] EMPTY_CHAIN = new HandlerList<?>[0];
+        private static final Chain NO_CHAIN = new Chain(-1, EMPTY_CHAIN);
+
+        private final Class<?> type;
+        private volatile HandlerList<?> handlers;
+
+        /**
+         * The handler lists for this class and all of its supertypes, and the generation they were computed in
+         */
+        private volatile Chain chain = NO_CHAIN;
+
+        EventSlot(Class<?> type) {
+            this.type = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> HandlerList<T> get() {
+            return (HandlerList<T>) handlers;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> HandlerList<T> getOrCreate() {
+
+            HandlerList<?> out = handlers;
+            if(out == null) {
+                synchronized (this) {
+                    out = handlers;
+                    if(out == null) {
+                        out = new HandlerList<T>();
+                        out.setInstrumented(instrumented);
+                        out.setFailurePolicy(failurePolicy);
+                        LISTS.add(out);
+                        handlers = out;
+                        // Published after the list, so any chain computed in the new generation includes it
+                        GENERATION.incrementAndGet();
+                    }
+                }
+            }
+            return (HandlerList<T>) out;
+        }
+
+        /**
+         * Gets the cached handler lists for this class and all of its supertypes, computing them if necessary
+         * @return The dispatch chain for events of this class
+         */
+        HandlerList<?>[] getChain() {
+
+            Chain out = chain;
+            int generation = GENERATION.get();
+            if(out.generation != generation) {
+                // Read before the chain is computed, so a list created meanwhile makes it stale again
+                out = new Chain(generation, computeChain());
+                chain = out;
+            }
+            return out.lists;
+        }
+
+        private HandlerList<?>[] computeChain() {
+
+            List<HandlerList<?>> out = new ArrayList<>();
+            Set<Class<?>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            ArrayDeque<Class<?>> interfaces = new ArrayDeque<>();
+
+            for(Class<?> clazz = type ; clazz != null ; clazz = clazz.getSuperclass()) {
+                addToChain(clazz, out);
+                Collections.addAll(interfaces, clazz.getInterfaces());
+            }
+            while(!interfaces.isEmpty()) {
+                Class<?> clazz = interfaces.poll();
+                if(visited.add(clazz)) {
+                    addToChain(clazz, out);
+                    Collections.addAll(interfaces, clazz.getInterfaces());
+                }
+            }
+
+            return out.isEmpty() ? EMPTY_CHAIN : out.toArray(EMPTY_CHAIN);
+        }
+
+        private static void addToChain(Class<?> clazz, List<HandlerList<?>> chain) {
+            HandlerList<?> handlers = SLOTS.get(clazz).handlers;
+            if(handlers != null) {
+                chain.add(handlers);
+            }
+        }
+    }
+
+    /**
+     * A computed dispatch chain, and the generation it was computed in
+     */
+    private static class Chain {
+
+        final int generation;
+        final HandlerList<?>[] lists;
+
+        Chain(int generation, HandlerList<?>[] lists) {
+            this.generation = generation;
+            this.lists = lists;
         }
     }
 
@@ -0,0 +1,244 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wallentines.mdcfg.ConfigObject;
+import org.wallentines.mdcfg.serializer.ConfigContext;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+import org.wallentines.mdcfg.serializer.Serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers the events written to a shared ring file by an {@link EventBridgeWriter}, usually in another process, to
+ * handler lists in this process. Each channel in the ring can be bound to a handler list and a serializer. Events in
+ * channels which are not bound are skipped. The channel name written in each frame is checked against the bound name,
+ * so events in a channel which only shares an ID with a bound channel are skipped as well.
+ * <br/>
+ * Events are decoded directly from the mapped file, without being copied out of it first. New events are delivered
+ * on whichever thread calls {@link #poll()}, so it should be called regularly, such as once per tick. Only events
+ * written after the reader is opened are delivered. If the writer overwrites events before they are polled, the
+ * reader skips ahead to the newest event, and counts the overrun in {@link #getOverrunCount()}.
+ */
+public class EventBridgeReader implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    private final FileChannel file;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer frames;
+    private final int capacity;
+    private final Map<Integer, Binding<?>> bindings = new ConcurrentHashMap<>();
+
+    /**
+     * The position of the next frame to read. Only accessed while holding this reader's lock.
+     */
+    private long position;
+    private long overruns;
+
+    /**
+     * Opens a ring file for reading
+     * @param path The ring file, which must already have been created by a writer
+     * @throws IOException If the file could not be opened, or is not an event ring
+     */
+    public EventBridgeReader(Path path) throws IOException {
+
+        this.file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = file.size();
+            if(size < EventRing.HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not an event ring!");
+            }
+
+            this.buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            this.capacity = buffer.getInt(EventRing.CAPACITY_OFFSET);
+            if(buffer.getInt(0) != EventRing.MAGIC || capacity <= 0 || EventRing.HEADER_SIZE + (long) capacity > size) {
+                throw new IOException(path + " is not an event ring!");
+            }
+        } catch (IOException | RuntimeException ex) {
+            file.close();
+            throw ex;
+        }
+
+        this.frames = buffer.duplicate();
+        this.position = EventRing.getAcquire(buffer, EventRing.PUBLISHED_OFFSET);
+    }
+
+    /**
+     * Delivers the events in a channel to a handler list
+     * @param channel The name the events are written under
+     * @param handlers The handler list to invoke the events on
+     * @param serializer The serializer to read the events with
+     * @param <T> The type of events in the channel
+     * @throws IllegalArgumentException If a different channel with the same ID is already bound
+     */
+    public <T> void bind(String channel, HandlerList<T> handlers, Serializer<T> serializer) {
+        addBinding(new Binding<>(channel, handlers, serializer));
+    }
+
+    /**
+     * Delivers the events in a channel as global {@link Event events}
+     * @param channel The name the events are written under
+     * @param serializer The serializer to read the events with
+     * @param <T> The type of events in the channel
+     * @throws IllegalArgumentException If a different channel with the same ID is already bound
+     */
+    public <T> void bind(String channel, Serializer<T> serializer) {
+        addBinding(new Binding<>(channel, null, serializer));
+    }
+
+    /**
+     * Delivers every event which has been written since the last poll
+     * @return The number of events which were delivered
+     */
+    public synchronized int poll() {
+
+        long published = EventRing.getAcquire(buffer, EventRing.PUBLISHED_OFFSET);
+        int delivered = 0;
+
+        while(position < published) {
+
+            int index = (int) (position % capacity);
+            int remaining = capacity - index;
+            int length = remaining < 4 ? EventRing.PADDING : frames.getInt(EventRing.HEADER_SIZE + index);
+
+            long next;
+            Binding<?> binding = null;
+            boolean mismatched = false;
+            SerializeResult<?> event = null;
+            if(length == EventRing.PADDING) {
+                next = position + remaining;
+            } else if(length < 4 || length > remaining - 4) {
+                // Only a frame which is being overwritten can have an invalid length
+                next = -1;
+            } else {
+                next = position + 4 + length;
+                int start = EventRing.HEADER_SIZE + index + 4;
+                binding = bindings.get(frames.getInt(start));
+                if(binding != null && !binding.matches(frames, start + 4, start + length)) {
+                    mismatched = true;
+                } else if(binding != null) {
+                    frames.limit(start + length);
+                    frames.position(start + 4 + binding.name.length);
+                    event = binding.decode(frames);
+                    frames.limit(frames.capacity());
+                }
+            }
+
+            // Everything read above is discarded if the writer has since claimed the region it was read from
+            EventRing.fence();
+            if(next == -1 || EventRing.getAcquire(buffer, EventRing.CLAIMED_OFFSET) - position > capacity) {
+                overruns++;
+                published = EventRing.getAcquire(buffer, EventRing.PUBLISHED_OFFSET);
+                position = published;
+                continue;
+            }
+
+            if(mismatched && !binding.mismatched) {
+                binding.mismatched = true;
+                LOGGER.warn("Channel {} has the same ID as another channel in a bridge! Events in the other channel will be skipped", binding.channel);
+            }
+            if(event != null) {
+                if(event.isComplete()) {
+                    binding.deliver(event.getOrThrow());
+                    delivered++;
+                } else {
+                    LOGGER.warn("Skipping a bridged event which could not be read! {}", event.getErrorMessage());
+                }
+            }
+            position = next;
+        }
+
+        return delivered;
+    }
+
+    /**
+     * Gets the number of times this reader fell so far behind the writer that events were overwritten before they
+     * could be read
+     * @return The number of overruns
+     */
+    public synchronized long getOverrunCount() {
+        return overruns;
+    }
+
+    /**
+     * Closes the ring file
+     * @throws IOException If the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void addBinding(Binding<?> binding) {
+        int id = EventRing.getChannelId(binding.channel);
+        Binding<?> existing = bindings.get(id);
+        if(existing != null && !existing.channel.equals(binding.channel)) {
+            throw new IllegalArgumentException("Channel " + binding.channel + " has the same ID as channel " + existing.channel + "!");
+        }
+        bindings.put(id, binding);
+    }
+
+    private static class Binding<T> {
+
+        final String channel;
+        final HandlerList<T> handlers;
+        final Serializer<T> serializer;
+        final byte[] name;
+
+        /**
+         * Whether a frame from a different channel with the same ID has been skipped. Only accessed while holding the
+         * reader's lock.
+         */
+        boolean mismatched;
+
+        Binding(String channel, HandlerList<T> handlers, Serializer<T> serializer) {
+            this.channel = channel;
+            this.handlers = handlers;
+            this.serializer = serializer;
+            this.name = EventRing.encodeChannelName(channel);
+        }
+
+        /**
+         * Determines whether a frame belongs to this channel, rather than another channel with the same ID
+         */
+        boolean matches(ByteBuffer in, int start, int end) {
+            if(end - start < name.length) return false;
+            for(int i = 0 ; i < name.length ; i++) {
+                if(in.get(start + i) != name[i]) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Decodes an event. Failures are returned rather than logged, since the frame may have been overwritten while
+         * it was read, which is only detected afterwards.
+         */
+        SerializeResult<T> decode(ByteBuffer in) {
+            try {
+                ConfigObject value = BinaryCodec.read(ConfigContext.INSTANCE, in);
+                return serializer.deserialize(ConfigContext.INSTANCE, value);
+            } catch (RuntimeException ex) {
+                return SerializeResult.failure("Unable to decode an event in channel " + channel + ": " + ex.getMessage());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void deliver(Object event) {
+            if(handlers == null) {
+                Event.invoke(event);
+            } else {
+                handlers.invoke((T) event);
+            }
+        }
+    }
+
+}
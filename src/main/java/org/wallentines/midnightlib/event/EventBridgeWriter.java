@@ -0,0 +1,254 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wallentines.mdcfg.ConfigObject;
+import org.wallentines.mdcfg.serializer.ConfigContext;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+import org.wallentines.mdcfg.serializer.Serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mirrors events into a shared, memory-mapped ring file, so they can be delivered to handler lists in other processes
+ * on the same host by an {@link EventBridgeReader}. Each mirrored event type is written under a channel name with its
+ * mdcfg serializer. Channel names must have different {@link String#hashCode() hash codes}, which are used as their
+ * IDs in the ring.
+ * <br/>
+ * A ring file must only have one writer at a time, but may have any number of readers. The writer never waits for
+ * readers. Once the ring is full, the oldest events are overwritten, and readers which have not read them yet skip
+ * ahead.
+ */
+public class EventBridgeWriter implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    private final FileChannel file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final ThreadLocal<BinaryCodec.Output> outputs = ThreadLocal.withInitial(() -> new BinaryCodec.Output(256));
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final Map<Integer, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * The position the next frame will be written at. Only accessed while holding this writer's lock.
+     */
+    private long position;
+
+    private volatile boolean closed;
+
+    /**
+     * Opens a ring file for writing, creating it if necessary. If the file is already a ring of the same size, writing
+     * continues where the previous writer stopped, so existing readers keep their place.
+     * @param path The ring file
+     * @param capacity The size of the ring, in bytes. Events which are larger than this are dropped
+     * @throws IOException If the file could not be opened
+     */
+    public EventBridgeWriter(Path path, int capacity) throws IOException {
+        if(capacity < 64) throw new IllegalArgumentException("An event ring must be at least 64 bytes!");
+
+        this.file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        this.capacity = capacity;
+
+        try {
+            this.buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, EventRing.HEADER_SIZE + (long) capacity);
+            if(buffer.getInt(0) == EventRing.MAGIC && buffer.getInt(EventRing.CAPACITY_OFFSET) == capacity) {
+                this.position = EventRing.getAcquire(buffer, EventRing.PUBLISHED_OFFSET);
+                EventRing.setRelease(buffer, EventRing.CLAIMED_OFFSET, position);
+            } else {
+                buffer.putInt(EventRing.CAPACITY_OFFSET, capacity);
+                EventRing.setRelease(buffer, EventRing.CLAIMED_OFFSET, 0L);
+                EventRing.setRelease(buffer, EventRing.PUBLISHED_OFFSET, 0L);
+                buffer.putInt(0, EventRing.MAGIC);
+            }
+        } catch (IOException | RuntimeException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Starts mirroring the events invoked on the given handler list. Events are mirrored before any other handler is
+     * called, so they are mirrored as they were invoked.
+     * @param channel The name to write the events under
+     * @param handlers The handler list to mirror
+     * @param serializer The serializer to write events with
+     * @param <T> The type of events to mirror
+     * @return A subscription which can be used to stop mirroring
+     * @throws IllegalArgumentException If a different channel with the same ID has already been written to
+     */
+    public <T> Subscription mirror(String channel, HandlerList<T> handlers, Serializer<T> serializer) {
+        Channel defined = defineChannel(channel);
+        return track(handlers.registerStrong(this, Integer.MIN_VALUE, false, event -> publish(defined, serializer, event)));
+    }
+
+    /**
+     * Starts mirroring the global {@link Event events} of the given type
+     * @param channel The name to write the events under
+     * @param type The type of events to mirror
+     * @param serializer The serializer to write events with
+     * @param <T> The type of events to mirror
+     * @return A subscription which can be used to stop mirroring
+     * @throws IllegalArgumentException If a different channel with the same ID has already been written to
+     */
+    public <T> Subscription mirror(String channel, Class<T> type, Serializer<T> serializer) {
+        Channel defined = defineChannel(channel);
+        return track(Event.registerStrong(type, this, Integer.MIN_VALUE, false, event -> publish(defined, serializer, event)));
+    }
+
+    /**
+     * Writes a single event to the ring
+     * @param channel The name to write the event under
+     * @param serializer The serializer to write the event with
+     * @param event The event to write
+     * @param <T> The type of event to write
+     * @return Whether the event was written
+     * @throws IllegalArgumentException If a different channel with the same ID has already been written to
+     */
+    public <T> boolean publish(String channel, Serializer<T> serializer, T event) {
+        return publish(defineChannel(channel), serializer, event);
+    }
+
+    /**
+     * Gets the position the next event will be written at
+     * @return The number of bytes written to the ring since it was created
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets the number of events which were dropped because they were larger than the ring
+     * @return The number of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops mirroring all events, and closes the file
+     * @throws IOException If the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) return;
+        closed = true;
+
+        synchronized (subscriptions) {
+            for(Subscription subscription : subscriptions) {
+                subscription.unregister();
+            }
+            subscriptions.clear();
+        }
+        file.close();
+    }
+
+    private Channel defineChannel(String name) {
+        int id = EventRing.getChannelId(name);
+        Channel channel = channels.get(id);
+        if(channel == null) {
+            Channel created = new Channel(id, name);
+            channel = channels.putIfAbsent(id, created);
+            if(channel == null) return created;
+        }
+        if(!channel.channel.equals(name)) {
+            throw new IllegalArgumentException("Channel " + name + " has the same ID as channel " + channel.channel + "!");
+        }
+        return channel;
+    }
+
+    private <T> boolean publish(Channel channel, Serializer<T> serializer, T event) {
+        if(closed) return false;
+
+        SerializeResult<ConfigObject> result = serializer.serialize(ConfigContext.INSTANCE, event);
+        if(!result.isComplete()) {
+            LOGGER.warn("Unable to serialize a bridged event! {}", result.getErrorMessage());
+            return false;
+        }
+
+        BinaryCodec.Output out = outputs.get();
+        out.reset();
+        out.writeInt(0);
+        out.writeInt(channel.id);
+        out.write(channel.name);
+        try {
+            BinaryCodec.write(ConfigContext.INSTANCE, result.getOrThrow(), out);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.warn("Unable to encode a bridged event!", ex);
+            return false;
+        }
+        out.setInt(0, out.size() - 4);
+        return write(out);
+    }
+
+    private Subscription track(Subscription subscription) {
+        if(closed) {
+            subscription.unregister();
+            throw new IllegalStateException("Attempt to mirror events to a closed bridge!");
+        }
+        synchronized (subscriptions) {
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    private synchronized boolean write(BinaryCodec.Output frame) {
+
+        int size = frame.size();
+        if(size > capacity) {
+            if(dropped.getAndIncrement() == 0) {
+                LOGGER.warn("A bridged event is larger than its ring! Events which do not fit will be dropped");
+            }
+            return false;
+        }
+
+        int index = (int) (position % capacity);
+        int remaining = capacity - index;
+        long start = size > remaining ? position + remaining : position;
+        long end = start + size;
+
+        // Readers discard anything they read from the claimed region, so it is claimed before it is overwritten
+        EventRing.setRelease(buffer, EventRing.CLAIMED_OFFSET, end);
+        EventRing.fence();
+
+        if(start != position && remaining >= 4) {
+            buffer.putInt(EventRing.HEADER_SIZE + index, EventRing.PADDING);
+        }
+        buffer.position(EventRing.HEADER_SIZE + (int) (start % capacity));
+        frame.writeTo(buffer);
+
+        position = end;
+        EventRing.setRelease(buffer, EventRing.PUBLISHED_OFFSET, end);
+        return true;
+    }
+
+    private static class Channel {
+
+        final String channel;
+        final int id;
+
+        /**
+         * The encoded name, which is written in every frame so readers can verify the channel an ID belongs to
+         */
+        final byte[] name;
+
+        Channel(int id, String channel) {
+            this.channel = channel;
+            this.id = id;
+            this.name = EventRing.encodeChannelName(channel);
+        }
+    }
+
+}
@@ -0,0 +1,371 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wallentines.mdcfg.ConfigObject;
+import org.wallentines.mdcfg.serializer.ConfigContext;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+import org.wallentines.mdcfg.serializer.Serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records the events invoked on selected {@link HandlerList HandlerLists} into an append-only, memory-mapped journal
+ * file, so they can be replayed later with a {@link JournalReplay}. Each recorded list is given a channel name, which
+ * is used to find the list and serializer to replay its events with.
+ * <br/>
+ * Events are serialized on the thread which invokes them, into a reusable buffer, and staged in memory. Staged events
+ * are copied into the mapped file in batches, either by whichever invoking thread fills a batch, or by
+ * {@link #flush()}, so recording does not write to the file on every event. Events still staged when the journal is
+ * closed are flushed first. Channel names are written to the file as soon as a channel is first recorded, so they
+ * always precede the channel's events.
+ * <br/>
+ * The file is a fixed-size segment. Once an event or channel name does not fit, the journal is full, and it and
+ * everything recorded later are dropped. Dropped events are counted by {@link #getDroppedCount()}. Opening an existing
+ * journal appends to it.
+ */
+public class EventJournal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    /**
+     * The first four bytes of every journal file
+     */
+    static final int MAGIC = 0x4D444A31;
+
+    /**
+     * The offset of the end of the last committed frame in the file header. Frames past this are ignored by readers.
+     */
+    static final int COMMITTED_OFFSET = 8;
+
+    /**
+     * The size of the file header. Frames start immediately after it.
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * A frame which assigns a channel name to a channel ID
+     */
+    static final byte CHANNEL_FRAME = 0;
+
+    /**
+     * A frame which contains a single recorded event
+     */
+    static final byte EVENT_FRAME = 1;
+
+    private final FileChannel file;
+    private final MappedByteBuffer buffer;
+    private final int batchSize;
+    private final long epochOffset;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ThreadLocal<BinaryCodec.Output> outputs = ThreadLocal.withInitial(() -> new BinaryCodec.Output(256));
+
+    /**
+     * The frames which have been recorded but not yet written. Only accessed while holding the staging lock.
+     */
+    private BinaryCodec.Output staging;
+    private final Object stagingLock = new Object();
+
+    /**
+     * The batch which is being written. This is swapped with the staging buffer, so neither is ever reallocated. Only
+     * accessed while holding the write lock.
+     */
+    private BinaryCodec.Output writing;
+
+    private final Map<String, Integer> channels = new HashMap<>();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    /**
+     * The end of the last frame copied into the file. Only accessed while holding the write lock.
+     */
+    private int position;
+
+    private volatile boolean closed;
+    private volatile boolean full;
+
+    /**
+     * Opens a journal which writes a batch once 64 KiB of events are queued
+     * @param path The journal file. If it already exists, events are appended to it
+     * @param capacity The size of the file, in bytes
+     * @throws IOException If the file could not be opened, or is not a journal
+     */
+    public EventJournal(Path path, int capacity) throws IOException {
+        this(path, capacity, 64 * 1024);
+    }
+
+    /**
+     * Opens a journal
+     * @param path The journal file. If it already exists, events are appended to it
+     * @param capacity The size of the file, in bytes
+     * @param batchSize The number of queued bytes at which an invoking thread writes the queued events to the file
+     * @throws IOException If the file could not be opened, or is not a journal
+     */
+    public EventJournal(Path path, int capacity, int batchSize) throws IOException {
+        if(capacity <= HEADER_SIZE) throw new IllegalArgumentException("A journal must be larger than its header!");
+
+        this.file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        this.batchSize = batchSize;
+        this.staging = new BinaryCodec.Output(Math.min(batchSize, 64 * 1024) + 256);
+        this.writing = new BinaryCodec.Output(Math.min(batchSize, 64 * 1024) + 256);
+        this.epochOffset = System.currentTimeMillis() * 1000000L - System.nanoTime();
+
+        try {
+            long existing = file.size();
+            this.buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, Math.min(existing, Integer.MAX_VALUE)));
+
+            if(existing == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putLong(COMMITTED_OFFSET, HEADER_SIZE);
+                this.position = HEADER_SIZE;
+            } else {
+                if(existing < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                    throw new IOException(path + " is not an event journal!");
+                }
+                // A committed offset outside the file would let new frames overwrite the header or be lost
+                long committed = buffer.getLong(COMMITTED_OFFSET);
+                if(committed < HEADER_SIZE || committed > existing) {
+                    throw new IOException(path + " is not an event journal!");
+                }
+                this.position = (int) committed;
+                readChannels();
+            }
+        } catch (IOException | RuntimeException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Starts recording the events invoked on the given handler list. Events are recorded before any other handler is
+     * called, so they are recorded as they were invoked.
+     * @param channel The name to record the events under, which is used to replay them
+     * @param handlers The handler list to record
+     * @param serializer The serializer to record events with
+     * @param <T> The type of events to record
+     * @return A subscription which can be used to stop recording
+     */
+    public <T> Subscription record(String channel, HandlerList<T> handlers, Serializer<T> serializer) {
+        if(closed) throw new IllegalStateException("Attempt to record to a closed journal!");
+
+        int id = defineChannel(channel);
+        Subscription out = handlers.registerStrong(this, Integer.MIN_VALUE, false, event -> append(id, serializer, event));
+        synchronized (subscriptions) {
+            subscriptions.add(out);
+        }
+        return out;
+    }
+
+    /**
+     * Writes all staged events to the file
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            writePending();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of bytes of the file which contain committed events
+     * @return The size of the journal's contents
+     */
+    public int getSize() {
+        return (int) buffer.getLong(COMMITTED_OFFSET);
+    }
+
+    /**
+     * Gets the size of the journal file
+     * @return The capacity of the journal, in bytes
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Gets the number of bytes of events which have been recorded, but not yet written to the file
+     * @return The number of staged bytes
+     */
+    public int getPendingBytes() {
+        synchronized (stagingLock) {
+            return staging.size();
+        }
+    }
+
+    /**
+     * Gets the number of events which were dropped because the journal was full
+     * @return The number of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Determines whether an event has failed to fit in the file, so all further events will be dropped
+     * @return Whether the journal is full
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * Stops recording all handler lists, writes all staged events, and closes the file
+     * @throws IOException If the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) return;
+        closed = true;
+
+        synchronized (subscriptions) {
+            for(Subscription subscription : subscriptions) {
+                subscription.unregister();
+            }
+            subscriptions.clear();
+        }
+
+        flush();
+        buffer.force();
+        file.close();
+    }
+
+    private int defineChannel(String channel) {
+        synchronized (channels) {
+            Integer id = channels.get(channel);
+            if(id == null) {
+                id = channels.size();
+                channels.put(channel, id);
+
+                BinaryCodec.Output out = new BinaryCodec.Output(channel.length() + 16);
+                out.writeInt(0);
+                out.writeByte(CHANNEL_FRAME);
+                out.writeVarInt(id);
+                out.writeString(channel);
+                out.setInt(0, out.size() - 4);
+
+                // Written immediately, so the channel is in the file before any of its events are recorded
+                stage(out);
+                flush();
+            }
+            return id;
+        }
+    }
+
+    private <T> void append(int channel, Serializer<T> serializer, T event) {
+        if(closed) return;
+        if(full) {
+            dropped.getAndIncrement();
+            return;
+        }
+
+        long timestamp = epochOffset + System.nanoTime();
+        SerializeResult<ConfigObject> result = serializer.serialize(ConfigContext.INSTANCE, event);
+        if(!result.isComplete()) {
+            LOGGER.warn("Unable to serialize a journaled event! {}", result.getErrorMessage());
+            return;
+        }
+
+        BinaryCodec.Output out = outputs.get();
+        out.reset();
+        out.writeInt(0);
+        out.writeByte(EVENT_FRAME);
+        out.writeVarInt(channel);
+        out.writeLong(timestamp);
+        try {
+            BinaryCodec.write(ConfigContext.INSTANCE, result.getOrThrow(), out);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.warn("Unable to encode a journaled event!", ex);
+            return;
+        }
+        out.setInt(0, out.size() - 4);
+
+        // Only one thread writes a batch at a time. Any others just stage their events, which the writer will pick up
+        if(stage(out) >= batchSize && writeLock.tryLock()) {
+            try {
+                writePending();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Copies an encoded frame into the staging buffer
+     * @param frame The frame to stage
+     * @return The number of staged bytes, including the frame
+     */
+    private int stage(BinaryCodec.Output frame) {
+        synchronized (stagingLock) {
+            staging.write(frame);
+            return staging.size();
+        }
+    }
+
+    private void writePending() {
+
+        BinaryCodec.Output batch;
+        synchronized (stagingLock) {
+            batch = staging;
+            staging = writing;
+            writing = batch;
+        }
+
+        int offset = 0;
+        while(offset < batch.size()) {
+            int length = 4 + batch.getInt(offset);
+            if(!full && length > buffer.capacity() - position) {
+                full = true;
+                LOGGER.warn("An event journal is full! Further events will be dropped");
+            }
+            if(full) {
+                // Nothing after the first frame which does not fit is written, so no frame is ever written without
+                // the frames before it. Only events are counted, not channel names
+                if(batch.getByte(offset + 4) == EVENT_FRAME) dropped.getAndIncrement();
+            } else {
+                buffer.position(position);
+                batch.writeTo(buffer, offset, length);
+                position += length;
+            }
+            offset += length;
+        }
+        batch.reset();
+
+        // Frames only become visible to readers once they are committed, so a reader never sees a partial batch
+        buffer.putLong(COMMITTED_OFFSET, position);
+    }
+
+    /**
+     * Reads the channel IDs which were already assigned in an existing journal
+     */
+    private void readChannels() {
+        ByteBuffer in = buffer.duplicate();
+        int offset = HEADER_SIZE;
+        while(offset + 4 <= position) {
+            int next = offset + 4 + in.getInt(offset);
+            if(next <= offset + 4 || next > position) break;
+
+            in.position(offset + 4);
+            if(in.get() == CHANNEL_FRAME) {
+                int id = BinaryCodec.readVarInt(in);
+                channels.put(BinaryCodec.readString(in), id);
+            }
+            offset = next;
+        }
+    }
+
+}
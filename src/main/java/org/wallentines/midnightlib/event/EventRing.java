@@ -0,0 +1,102 @@
+package org.wallentines.midnightlib.event;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The layout of the shared ring file used by {@link EventBridgeWriter} and {@link EventBridgeReader}.
+ * <br/>
+ * The file starts with a header, followed by the ring itself. Positions in the ring are counted in bytes written since
+ * the ring was created, and never wrap, so a reader can tell how far behind the writer it is. Each frame is a length,
+ * a channel ID, the channel's name, and an encoded event. The ID is used to look up a channel quickly, and the name to
+ * verify it, since different channel names may have the same ID. Frames never wrap around the end of the ring. If a
+ * frame does not fit before the end, the rest of the ring is skipped, and marked with a padding length if there is room
+ * for one.
+ * <br/>
+ * Before writing a frame, the writer claims the ring up to the end of the frame, and after writing it, publishes it.
+ * Readers only read published frames, and discard any frame which was claimed over while they were reading it.
+ */
+final class EventRing {
+
+    static final int MAGIC = 0x4D445231;
+
+    /**
+     * The offset of the size of the ring, in bytes
+     */
+    static final int CAPACITY_OFFSET = 4;
+
+    /**
+     * The offset of the end of the frame which is being written
+     */
+    static final int CLAIMED_OFFSET = 8;
+
+    /**
+     * The offset of the end of the last frame which was completely written
+     */
+    static final int PUBLISHED_OFFSET = 16;
+
+    /**
+     * The size of the file header. The ring starts immediately after it.
+     */
+    static final int HEADER_SIZE = 64;
+
+    /**
+     * The frame length which marks the rest of the ring as skipped
+     */
+    static final int PADDING = -1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private EventRing() { }
+
+    /**
+     * Reads a header position, such that nothing read afterwards is read before it
+     * @param buffer The mapped file
+     * @param offset The offset of the position in the header
+     * @return The position
+     */
+    static long getAcquire(ByteBuffer buffer, int offset) {
+        return (long) LONGS.getAcquire(buffer, offset);
+    }
+
+    /**
+     * Writes a header position, such that nothing written before it is written afterwards
+     * @param buffer The mapped file
+     * @param offset The offset of the position in the header
+     * @param value The position
+     */
+    static void setRelease(ByteBuffer buffer, int offset, long value) {
+        LONGS.setRelease(buffer, offset, value);
+    }
+
+    /**
+     * Keeps reads and writes from being reordered across this call
+     */
+    static void fence() {
+        VarHandle.fullFence();
+    }
+
+    /**
+     * Determines the ID frames in a channel are written with
+     * @param channel The name of the channel
+     * @return The channel's ID
+     */
+    static int getChannelId(String channel) {
+        // String hashes are specified, so every process computes the same ID
+        return channel.hashCode();
+    }
+
+    /**
+     * Encodes a channel name the way it is written in each frame
+     * @param channel The name of the channel
+     * @return The encoded name
+     */
+    static byte[] encodeChannelName(String channel) {
+        BinaryCodec.Output out = new BinaryCodec.Output(channel.length() + 5);
+        out.writeString(channel);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,28 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides what happens when an event handler throws an exception
+ * @see RateLimitedFailurePolicy
+ */
+public interface FailurePolicy {
+
+    /**
+     * The default policy, which logs every exception with its full stack trace and never disables handlers
+     */
+    FailurePolicy LOG = (handler, th, consecutiveFailures) -> {
+        LoggerFactory.getLogger("Event").warn("An exception was thrown while an event was being handled!", th);
+        return false;
+    };
+
+    /**
+     * Called each time a handler throws an exception. This is called on the thread which invoked the handler.
+     * @param handler The handler which threw the exception
+     * @param th The exception which was thrown
+     * @param consecutiveFailures The number of times in a row the handler has thrown an exception, including this one
+     * @return Whether the handler should be unregistered
+     */
+    boolean onFailure(Object handler, Throwable th, int consecutiveFailures);
+
+}
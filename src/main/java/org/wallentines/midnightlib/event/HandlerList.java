@@ -1,29 +1,34 @@
 package org.wallentines.midnightlib.event;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.lang.ref.WeakReference;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collection;
 
 /**
  * A class for invoking and handling events
  * @param <T> The type of event to handle
  */
-public class HandlerList<T> {
+public class HandlerList<T> extends CopyOnWriteHandlerList<EventHandler<T>, HandlerList.WrappedHandler<T>> {
+
+    @SuppressWarnings("rawtypes")
+    private static final WrappedHandler[] EMPTY = new WrappedHandler[0];
 
-    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+    /**
+     * The number of times a snapshot must be invoked without changing before it is compiled
+     */
+    private static final int COMPILE_THRESHOLD = 1000;
 
-    protected final PriorityBlockingQueue<WrappedHandler> handlers = new PriorityBlockingQueue<>();
+    private volatile boolean compiled;
 
     /**
-     * Registers a new event handler with the given listener
-     * @param listener The registered listener. This can be anything, but if it is garbage-collected, the handler will
-     *                 be removed from the list
-     * @param handler The handler to call when an event is invoked
+     * The compiled dispatcher for the current snapshot, or the progress towards compiling it
      */
-    public void register(Object listener, EventHandler<T> handler) {
-        register(listener, 50, handler);
+    private volatile CompiledChain compiledChain;
+
+    /**
+     * Creates an empty handler list
+     */
+    public HandlerList() {
+        super(empty());
     }
 
     /**
@@ -31,11 +36,50 @@ public class HandlerList<T> {
      * @param listener The registered listener. This can be anything, but if it is garbage-collected, the handler will
      *                 be removed from the list
      * @param priority The priority of the handler. Handlers with lower priorities are called earlier
+     * @param ignoreCancelled Whether the handler should be skipped for events which are {@link Cancellable} and have
+     *                        been cancelled by an earlier handler
      * @param handler The handler to call when an event is invoked
+     * @return A subscription which can be used to unregister the handler
      */
-    public void register(Object listener, int priority, EventHandler<T> handler) {
+    public Subscription register(Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler) {
+        return add(wrap(listener, priority, ignoreCancelled, handler, expired));
+    }
 
-        handlers.add(new WrappedHandler(listener, priority, handler));
+    /**
+     * Registers a new event handler which strongly references its listener. No weak reference is allocated for the
+     * handler, and it is never checked for expiry, so it stays registered until it is explicitly unregistered, through
+     * its subscription or {@link #unregisterAll(Object)}. This suits long-lived listeners, such as plugins or
+     * singletons, which would never be collected anyway.
+     * @param listener The registered listener. This can be anything, and will not be garbage-collected while the
+     *                 handler is registered
+     * @param priority The priority of the handler. Handlers with lower priorities are called earlier
+     * @param ignoreCancelled Whether the handler should be skipped for events which are {@link Cancellable} and have
+     *                        been cancelled by an earlier handler
+     * @param handler The handler to call when an event is invoked
+     * @return A subscription which can be used to unregister the handler
+     */
+    public Subscription registerStrong(Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler) {
+        return add(wrap(listener, priority, ignoreCancelled, handler, null));
+    }
+
+    /**
+     * Wraps a handler so it can be added to the list. Subclasses which use their own {@link WrappedHandler} types
+     * should override this.
+     * @param listener The registered listener
+     * @param priority The priority of the handler
+     * @param ignoreCancelled Whether the handler should be skipped for cancelled events
+     * @param handler The handler to wrap
+     * @param queue The queue to register the listener's weak reference with, or null if the listener should be
+     *              strongly referenced
+     * @return A new wrapped handler
+     */
+    protected WrappedHandler<T> wrap(Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler, ReferenceQueue<Object> queue) {
+        return new WrappedHandler<>(listener, priority, ignoreCancelled, handler, queue);
+    }
+
+    @Override
+    protected WrappedHandler<T> createEntry(Object listener, int priority, EventHandler<T> handler, ReferenceQueue<Object> queue) {
+        return wrap(listener, priority, false, handler, queue);
     }
 
     /**
@@ -45,63 +89,259 @@ public class HandlerList<T> {
     public void invoke(T event) {
 
         clearExpiredHandlers();
-        for(WrappedHandler handler : handlers) {
-            handle(handler.handler, event);
+        boolean instrumented = isInstrumented();
+        WrappedHandler<T>[] snapshot = handlers;
+        if(compiled && !instrumented) {
+            CompiledDispatch.Dispatcher dispatcher = getDispatcher(snapshot);
+            if(dispatcher != null) {
+                dispatcher.invoke(event);
+                return;
+            }
+        }
+        for(WrappedHandler<T> handler : snapshot) {
+            if(isSkipped(handler, event)) continue;
+            if(instrumented) {
+                handleInstrumented(handler, event);
+            } else {
+                handle(handler, event);
+            }
+        }
+    }
+
+    /**
+     * Gets the compiled dispatcher for the given snapshot. Snapshots are only compiled once they have been invoked
+     * 1000 times without changing, so lists whose handlers are still being registered do not
+     * compile every intermediate snapshot.
+     * @param snapshot The snapshot being invoked
+     * @return A compiled dispatcher, or null if the snapshot has not been compiled yet
+     */
+    private CompiledDispatch.Dispatcher getDispatcher(WrappedHandler<T>[] snapshot) {
+
+        CompiledChain chain = compiledChain;
+        if(chain == null || chain.snapshot != snapshot) {
+            compiledChain = new CompiledChain(snapshot, null);
+            return null;
+        }
+        if(chain.dispatcher != null) {
+            return chain.dispatcher;
+        }
+        // Not atomic, so a snapshot may occasionally be compiled late, or more than once
+        if(++chain.invocations < COMPILE_THRESHOLD) {
+            return null;
+        }
+
+        CompiledDispatch.Dispatcher out = CompiledDispatch.compile(this, snapshot);
+        compiledChain = new CompiledChain(snapshot, out);
+        return out;
+    }
+
+    /**
+     * Determines whether compiled dispatch is enabled
+     * @return Whether compiled dispatch is enabled
+     */
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Enables or disables compiled dispatch. When enabled, once the registered handlers have stopped changing,
+     * {@link #invoke(Object) invoke} generates a specialized dispatcher which calls each handler from its own call
+     * site, so the JIT can inline handlers instead of calling them through a single megamorphic call site. The
+     * dispatcher is regenerated lazily whenever the handlers change.
+     * <br/>
+     * Compiled dispatch is bypassed while instrumentation is enabled, and does not apply to
+     * {@link #invokeAll(Collection) invokeAll}. Compiled handlers are skipped, and their failures are reported, in
+     * the same way as by {@link #handle(WrappedHandler, Object) handle}, but subclasses which override
+     * {@code handle} should not enable compiled dispatch, since compiled handlers do not call it.
+     * @param compiled Whether compiled dispatch should be enabled
+     */
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
+        if(!compiled) {
+            compiledChain = null;
+        }
+    }
+
+    /**
+     * Invokes a batch of events. Each handler is called for every event in the batch before the next handler is
+     * called, so handlers observe the whole batch in order, but do not observe events interleaved with other handlers.
+     * @param events The events to invoke
+     */
+    public void invokeAll(Collection<? extends T> events) {
+
+        if(events.isEmpty()) return;
+
+        clearExpiredHandlers();
+        boolean instrumented = isInstrumented();
+        for(WrappedHandler<T> handler : handlers) {
+            for(T event : events) {
+                if(isSkipped(handler, event)) continue;
+                if(instrumented) {
+                    handleInstrumented(handler, event);
+                } else {
+                    handle(handler, event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invokes a batch of events. Each handler is called for every event in the batch before the next handler is
+     * called, so handlers observe the whole batch in order, but do not observe events interleaved with other handlers.
+     * @param events The events to invoke
+     */
+    public void invokeAll(T[] events) {
+        invokeAll(events, 0, events.length);
+    }
+
+    /**
+     * Invokes a range of a batch of events. Each handler is called for every event in the range before the next
+     * handler is called.
+     * @param events The events to invoke
+     * @param start The index of the first event to invoke
+     * @param end The index after the last event to invoke
+     */
+    public void invokeAll(T[] events, int start, int end) {
+
+        if(start >= end) return;
+
+        clearExpiredHandlers();
+        invokeAll(handlers, events, start, end);
+    }
+
+    /**
+     * Invokes a range of a batch of events on the given handler snapshot
+     * @param snapshot The handlers to invoke
+     * @param events The events to invoke
+     * @param start The index of the first event to invoke
+     * @param end The index after the last event to invoke
+     */
+    protected void invokeAll(WrappedHandler<T>[] snapshot, T[] events, int start, int end) {
+        boolean instrumented = isInstrumented();
+        for(WrappedHandler<T> handler : snapshot) {
+            for(int i = start ; i < end ; i++) {
+                if(isSkipped(handler, events[i])) continue;
+                if(instrumented) {
+                    handleInstrumented(handler, events[i]);
+                } else {
+                    handle(handler, events[i]);
+                }
+            }
         }
     }
 
     /**
-     * Handles a given event by invoking the given event handler
+     * Determines whether the given handler should be skipped for the given event. Only handlers which ignore cancelled
+     * events need to inspect the event, so all other handlers pay a single branch.
+     * @param handler The handler which is about to be invoked
+     * @param event The event being handled
+     * @return Whether the handler should not be invoked
+     */
+    protected static boolean isSkipped(WrappedHandler<?> handler, Object event) {
+        return handler.ignoreCancelled && isCancelled(event);
+    }
+
+    /**
+     * Determines whether the given event is {@link Cancellable} and has been cancelled
+     * @param event The event to check
+     * @return Whether the event has been cancelled
+     */
+    protected static boolean isCancelled(Object event) {
+        return event instanceof Cancellable && ((Cancellable) event).isCancelled();
+    }
+
+    /**
+     * Handles a given event by invoking the given registered handler. If it throws an exception, it is reported to
+     * the list's {@link FailurePolicy}.
      * @param handler The handler to invoke
      * @param event The event to handle
      */
-    protected void handle(EventHandler<T> handler, T event) {
+    protected void handle(WrappedHandler<T> handler, T event) {
         try {
-            handler.invoke(event);
+            handler.handler.invoke(event);
+            handleSuccess(handler, null, 0L);
         } catch (Throwable th) {
-            LOGGER.warn("An exception was thrown while an event was being handled!", th);
+            handleFailure(handler, th);
         }
     }
 
     /**
-     * Unregisters all event handlers
+     * Handles a given event by invoking the given event handler, which does not need to be registered
+     * @param handler The handler to invoke
+     * @param event The event to handle
      */
-    public void unregisterAll() {
-        handlers.clear();
+    protected void handle(EventHandler<T> handler, T event) {
+        try {
+            handler.invoke(event);
+        } catch (Throwable th) {
+            getFailurePolicy().onFailure(handler, th, 1);
+        }
     }
 
     /**
-     * Unregisters all event handlers with the given listener
-     * @param listener The listener to lookup
+     * Handles a given event by invoking the given event handler, and records how long it took and whether it threw
+     * an exception
+     * @param handler The handler to invoke
+     * @param event The event to handle
      */
-    public void unregisterAll(Object listener) {
-        handlers.removeIf(wrappedHandler
-                -> wrappedHandler != null
-                && wrappedHandler.listener.get() == listener);
+    protected void handleInstrumented(WrappedHandler<T> handler, T event) {
+
+        HandlerMetrics metrics = handler.metrics;
+        if(metrics == null) {
+            handle(handler, event);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            handler.handler.invoke(event);
+            handleSuccess(handler, metrics, start);
+        } catch (Throwable th) {
+            handleFailure(handler, th, metrics, start);
+        }
     }
 
-    /**
-     * Removes all handlers which have been garbage-collected
-     */
-    protected void clearExpiredHandlers() {
-        handlers.removeIf(h -> h == null || h.listener.get() == null);
+    @SuppressWarnings("unchecked")
+    private static <T> WrappedHandler<T>[] empty() {
+        return (WrappedHandler<T>[]) EMPTY;
     }
 
-    protected class WrappedHandler implements Comparable<WrappedHandler> {
+    /**
+     * A registered event handler, and whether it should be skipped for cancelled events
+     * @param <T> The type of event to handle
+     */
+    protected static class WrappedHandler<T> extends CopyOnWriteHandlerList.Entry<EventHandler<T>> {
 
-        final WeakReference<?> listener;
-        final int priority;
-        final EventHandler<T> handler;
+        final boolean ignoreCancelled;
 
-        public WrappedHandler(Object listener, int priority, EventHandler<T> handler) {
-            this.listener = new WeakReference<>(listener);
-            this.priority = priority;
-            this.handler = handler;
+        /**
+         * Creates a wrapped handler
+         * @param listener The registered listener
+         * @param priority The priority of the handler
+         * @param ignoreCancelled Whether the handler should be skipped for cancelled events
+         * @param handler The handler to wrap
+         * @param queue The queue to register the listener's weak reference with, or null if the listener should be
+         *              strongly referenced
+         */
+        public WrappedHandler(Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler,
+                              ReferenceQueue<Object> queue) {
+            super(listener, priority, handler, queue);
+            this.ignoreCancelled = ignoreCancelled;
         }
+    }
+
+    /**
+     * A snapshot, and either its compiled dispatcher or the number of times it has been invoked without one
+     */
+    private static class CompiledChain {
+
+        final WrappedHandler<?>[] snapshot;
+        final CompiledDispatch.Dispatcher dispatcher;
+        int invocations;
 
-        @Override
-        public int compareTo(WrappedHandler o) {
-            return Integer.compare(priority, o.priority);
+        CompiledChain(WrappedHandler<?>[] snapshot, CompiledDispatch.Dispatcher dispatcher) {
+            this.snapshot = snapshot;
+            this.dispatcher = dispatcher;
         }
     }
 
@@ -0,0 +1,167 @@
+package org.wallentines.midnightlib.event;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records invocation counts, exception counts, and a latency histogram for a single event handler. Instances are only
+ * created for handler lists which have instrumentation enabled.
+ * <br/>
+ * Latencies are recorded in a log-linear histogram, in the style of HdrHistogram. Each power of two is split into
+ * 16 linear sub-buckets, so reported percentiles are within about 6% of the true value.
+ */
+public class HandlerMetrics {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder exceptions = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records a single invocation of the handler
+     * @param nanos How long the handler took to run, in nanoseconds
+     * @param failed Whether the handler threw an exception
+     */
+    public void record(long nanos, boolean failed) {
+        if(nanos < 0) nanos = 0;
+        invocations.increment();
+        if(failed) exceptions.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        histogram.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * Creates an immutable copy of the current metrics. Because recording is not paused while the copy is made, the
+     * copy may be very slightly inconsistent if the handler is running concurrently.
+     * @param handler The handler these metrics belong to
+     * @param listener The listener the handler was registered with, or null if it has been collected
+     * @param priority The priority the handler was registered with
+     * @return A snapshot of the metrics
+     */
+    public Snapshot snapshot(Object handler, Object listener, int priority) {
+
+        long[] counts = new long[BUCKETS];
+        for(int i = 0 ; i < BUCKETS ; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return new Snapshot(handler, listener, priority, invocations.sum(), exceptions.sum(), totalNanos.sum(), maxNanos.get(), counts);
+    }
+
+    private static int bucket(long nanos) {
+        if(nanos < SUB_BUCKETS) return (int) nanos;
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long highestValueIn(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * An immutable view of the metrics for a single handler
+     */
+    public static class Snapshot {
+
+        private final Object handler;
+        private final Object listener;
+        private final int priority;
+        private final long invocations;
+        private final long exceptions;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+
+        private Snapshot(Object handler, Object listener, int priority, long invocations, long exceptions, long totalNanos, long maxNanos, long[] histogram) {
+            this.handler = handler;
+            this.listener = listener;
+            this.priority = priority;
+            this.invocations = invocations;
+            this.exceptions = exceptions;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.histogram = histogram;
+        }
+
+        public Object getHandler() {
+            return handler;
+        }
+
+        public Object getListener() {
+            return listener;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public long getInvocations() {
+            return invocations;
+        }
+
+        public long getExceptions() {
+            return exceptions;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getMeanNanos() {
+            return invocations == 0 ? 0.0 : (double) totalNanos / invocations;
+        }
+
+        /**
+         * Gets the latency below which the given percentage of invocations completed
+         * @param percentile The percentile to lookup, from 0 to 100
+         * @return The latency at the given percentile, in nanoseconds
+         */
+        public long getPercentileNanos(double percentile) {
+
+            long total = 0;
+            for(long count : histogram) {
+                total += count;
+            }
+            if(total == 0) return 0L;
+
+            long target = Math.max(1L, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+            long seen = 0;
+            for(int i = 0 ; i < histogram.length ; i++) {
+                seen += histogram[i];
+                if(seen >= target) {
+                    return Math.min(highestValueIn(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "HandlerMetrics.Snapshot{" +
+                    "handler=" + handler +
+                    ", listener=" + listener +
+                    ", priority=" + priority +
+                    ", invocations=" + invocations +
+                    ", exceptions=" + exceptions +
+                    ", mean=" + (long) getMeanNanos() + "ns" +
+                    ", p50=" + getPercentileNanos(50) + "ns" +
+                    ", p99=" + getPercentileNanos(99) + "ns" +
+                    ", max=" + maxNanos + "ns" +
+                    '}';
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * A functional interface for handling int events without boxing them
+ */
+public interface IntEventHandler {
+
+    /**
+     * Handles an event
+     * @param value The event data
+     */
+    void invoke(int value);
+
+}
@@ -0,0 +1,28 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * A handler list for events which are a single int, such as a count or an ID. Values are passed to handlers directly,
+ * so they never need to be boxed, and invoking a value does not allocate.
+ * <br/>
+ * Handlers are ordered by priority, and are removed when their listeners are garbage-collected, in the same way as a
+ * {@link HandlerList}.
+ */
+public class IntHandlerList extends AbstractHandlerList<IntEventHandler> {
+
+    /**
+     * Invokes an event
+     * @param value The event data
+     */
+    public void invoke(int value) {
+        for(Entry<IntEventHandler> entry : getHandlers()) {
+            long start = begin(entry);
+            try {
+                entry.handler.invoke(value);
+                succeeded(entry, start);
+            } catch (Throwable th) {
+                failed(entry, th, start);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wallentines.mdcfg.ConfigObject;
+import org.wallentines.mdcfg.serializer.ConfigContext;
+import org.wallentines.mdcfg.serializer.SerializeResult;
+import org.wallentines.mdcfg.serializer.Serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays the events recorded by an {@link EventJournal}. Each recorded channel can be bound to a handler list and a
+ * serializer, and its events are deserialized and invoked on that list in the order they were recorded. Channels
+ * which are not bound are skipped.
+ * <br/>
+ * Events are read directly from the mapped file, and can be replayed as fast as possible, or with the same spacing
+ * they were recorded with, optionally sped up.
+ */
+public class JournalReplay implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    private final FileChannel file;
+    private final MappedByteBuffer buffer;
+    private final Map<String, Binding<?>> bindings = new ConcurrentHashMap<>();
+
+    /**
+     * Opens a journal for replay
+     * @param path The journal file
+     * @throws IOException If the file could not be opened, or is not a journal
+     */
+    public JournalReplay(Path path) throws IOException {
+
+        this.file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = file.size();
+            if(size < EventJournal.HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not an event journal!");
+            }
+            this.buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if(buffer.getInt(0) != EventJournal.MAGIC) {
+                throw new IOException(path + " is not an event journal!");
+            }
+        } catch (IOException | RuntimeException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Binds a recorded channel to a handler list
+     * @param channel The name the events were recorded under
+     * @param handlers The handler list to invoke the events on
+     * @param serializer The serializer to read the events with
+     * @param <T> The type of events in the channel
+     */
+    public <T> void bind(String channel, HandlerList<T> handlers, Serializer<T> serializer) {
+        bindings.put(channel, new Binding<>(handlers, serializer));
+    }
+
+    /**
+     * Replays every recorded event in bound channels as fast as possible
+     * @return The number of events which were invoked
+     */
+    public int replay() {
+        return replay(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Replays every recorded event in bound channels, with the same spacing they were recorded with, divided by the
+     * given speed. The first event is invoked immediately.
+     * @param speed How many times faster than the original timing events should be replayed. 1 replays events at the
+     *              speed they were recorded, and infinity replays them as fast as possible
+     * @return The number of events which were invoked
+     */
+    public int replay(double speed) {
+        if(!(speed > 0)) throw new IllegalArgumentException("Replay speed must be positive!");
+
+        ByteBuffer in = buffer.duplicate();
+        long end = Math.min(in.getLong(EventJournal.COMMITTED_OFFSET), in.capacity());
+        Map<Integer, Binding<?>> channels = new HashMap<>();
+
+        long start = System.nanoTime();
+        long first = 0;
+        boolean started = false;
+        int replayed = 0;
+
+        int offset = EventJournal.HEADER_SIZE;
+        while(offset + 4 <= end) {
+            int next = offset + 4 + in.getInt(offset);
+            if(next <= offset + 4 || next > end) {
+                LOGGER.warn("Stopping replay at a corrupt journal frame at offset {}", offset);
+                break;
+            }
+
+            in.limit(next);
+            in.position(offset + 4);
+            try {
+                byte kind = in.get();
+                int channel = BinaryCodec.readVarInt(in);
+
+                if(kind == EventJournal.CHANNEL_FRAME) {
+                    channels.put(channel, bindings.get(BinaryCodec.readString(in)));
+                } else if(kind == EventJournal.EVENT_FRAME) {
+                    long timestamp = in.getLong();
+                    if(!started) {
+                        first = timestamp;
+                        started = true;
+                    }
+
+                    Binding<?> binding = channels.get(channel);
+                    if(binding != null) {
+                        if(!Double.isInfinite(speed)) {
+                            waitUntil(start + (long) ((timestamp - first) / speed));
+                        }
+                        if(binding.invoke(in)) replayed++;
+                    }
+                }
+            } catch (RuntimeException ex) {
+                // The frame's length is still valid, so only this frame needs to be skipped
+                LOGGER.warn("Skipping a corrupt journal frame at offset {}", offset, ex);
+            }
+
+            in.limit(in.capacity());
+            offset = next;
+        }
+
+        return replayed;
+    }
+
+    /**
+     * Closes the journal file
+     * @throws IOException If the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static class Binding<T> {
+
+        final HandlerList<T> handlers;
+        final Serializer<T> serializer;
+
+        Binding(HandlerList<T> handlers, Serializer<T> serializer) {
+            this.handlers = handlers;
+            this.serializer = serializer;
+        }
+
+        boolean invoke(ByteBuffer in) {
+
+            ConfigObject value;
+            try {
+                value = BinaryCodec.read(ConfigContext.INSTANCE, in);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Unable to decode a journaled event!", ex);
+                return false;
+            }
+
+            SerializeResult<T> result = serializer.deserialize(ConfigContext.INSTANCE, value);
+            if(!result.isComplete()) {
+                LOGGER.warn("Unable to deserialize a journaled event! {}", result.getErrorMessage());
+                return false;
+            }
+
+            handlers.invoke(result.getOrThrow());
+            return true;
+        }
+    }
+
+}
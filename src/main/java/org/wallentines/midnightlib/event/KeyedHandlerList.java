@@ -0,0 +1,282 @@
+package org.wallentines.midnightlib.event;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A handler list which indexes its handlers by key. Handlers registered with a key are only called for events whose
+ * key matches, and handlers registered without a key act as wildcards, and are called for every event. Invoking an
+ * event only visits the wildcard handlers and the handlers registered for its key, so the cost of dispatch does not
+ * depend on how many other keys have handlers.
+ * <br/>
+ * Keyed and wildcard handlers are called together in priority order. When a keyed handler and a wildcard handler have
+ * the same priority, the wildcard handler is called first.
+ * <br/>
+ * A key is removed from the index as soon as its last handler is removed, whether it is unregistered or its listener
+ * is garbage-collected, so keys which are no longer used do not accumulate.
+ * @param <K> The type of key events are indexed by
+ * @param <T> The type of event to handle
+ */
+public class KeyedHandlerList<K, T> extends HandlerList<T> {
+
+    private final Function<? super T, ? extends K> keyExtractor;
+    private final ConcurrentHashMap<K, KeyList> index = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a keyed handler list
+     * @param keyExtractor A function which determines the key of an event. If this returns null, only wildcard
+     *                     handlers will be called
+     */
+    public KeyedHandlerList(Function<? super T, ? extends K> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Registers a new event handler which will only be called for events with the given key
+     * @param key The key of the events to handle
+     * @param listener The registered listener. This can be anything, but if it is garbage-collected, the handler will
+     *                 be removed from the list
+     * @param handler The handler to call when an event with the given key is invoked
+     * @return A subscription which can be used to unregister the handler
+     */
+    public Subscription register(K key, Object listener, EventHandler<T> handler) {
+        return register(key, listener, 50, false, handler);
+    }
+
+    /**
+     * Registers a new event handler which will only be called for events with the given key
+     * @param key The key of the events to handle
+     * @param listener The registered listener. This can be anything, but if it is garbage-collected, the handler will
+     *                 be removed from the list
+     * @param priority The priority of the handler. Handlers with lower priorities are called earlier
+     * @param ignoreCancelled Whether the handler should be skipped for events which are {@link Cancellable} and have
+     *                        been cancelled by an earlier handler
+     * @param handler The handler to call when an event with the given key is invoked
+     * @return A subscription which can be used to unregister the handler
+     */
+    public Subscription register(K key, Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler) {
+
+        if(key == null) throw new IllegalArgumentException("Attempt to register a handler with a null key!");
+
+        // Registered inside compute() so the list cannot be removed from the index while it is being added to
+        Subscription[] out = new Subscription[1];
+        index.compute(key, (k, list) -> {
+            if(list == null) {
+                list = new KeyList(k);
+                list.setInstrumented(isInstrumented());
+                list.setFailurePolicy(getFailurePolicy());
+            }
+            // Listener references are reported to this list's queue, so handlers for keys which are never invoked
+            // still expire
+            out[0] = list.add(new KeyedHandler<>(list, listener, priority, ignoreCancelled, handler, expired));
+            return list;
+        });
+        return out[0];
+    }
+
+    @Override
+    public void invoke(T event) {
+
+        K key = keyExtractor.apply(event);
+        HandlerList<T> keyed = key == null ? null : index.get(key);
+        if(keyed == null || keyed.isEmpty()) {
+            super.invoke(event);
+            return;
+        }
+
+        clearExpiredHandlers();
+
+        WrappedHandler<T>[] wildcards = handlers;
+        WrappedHandler<T>[] matching = keyed.handlers;
+        boolean instrumented = isInstrumented();
+
+        // Merge the two sorted snapshots
+        int i = 0;
+        int j = 0;
+        while(i < wildcards.length || j < matching.length) {
+
+            HandlerList<T> owner;
+            WrappedHandler<T> handler;
+            if(j == matching.length || (i < wildcards.length && wildcards[i].priority <= matching[j].priority)) {
+                owner = this;
+                handler = wildcards[i++];
+            } else {
+                owner = keyed;
+                handler = matching[j++];
+            }
+
+            if(isSkipped(handler, event)) continue;
+            if(instrumented) {
+                owner.handleInstrumented(handler, event);
+            } else {
+                owner.handle(handler, event);
+            }
+        }
+    }
+
+    @Override
+    public void invokeAll(Collection<? extends T> events) {
+        for(T event : events) {
+            invoke(event);
+        }
+    }
+
+    @Override
+    public void invokeAll(T[] events, int start, int end) {
+        for(int i = start ; i < end ; i++) {
+            invoke(events[i]);
+        }
+    }
+
+    /**
+     * Determines whether there are any handlers registered, either as wildcards or for any key
+     * @return Whether there are no registered handlers
+     */
+    @Override
+    public boolean isEmpty() {
+        if(!super.isEmpty()) return false;
+        for(KeyList list : index.values()) {
+            if(!list.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of keys which have handlers registered
+     * @return The number of indexed keys
+     */
+    public int getKeyCount() {
+        return index.size();
+    }
+
+    @Override
+    public void unregisterAll() {
+        super.unregisterAll();
+        index.clear();
+    }
+
+    @Override
+    public void unregisterAll(Object listener) {
+        super.unregisterAll(listener);
+        for(KeyList list : index.values()) {
+            list.unregisterAll(listener);
+        }
+    }
+
+    /**
+     * Unregisters all event handlers registered for the given key
+     * @param key The key to lookup
+     */
+    public void unregisterKey(K key) {
+        KeyList list = index.remove(key);
+        if(list != null) {
+            list.unregisterAll();
+        }
+    }
+
+    @Override
+    public void setInstrumented(boolean instrumented) {
+        super.setInstrumented(instrumented);
+        for(KeyList list : index.values()) {
+            list.setInstrumented(instrumented);
+        }
+    }
+
+    @Override
+    public void setFailurePolicy(FailurePolicy failurePolicy) {
+        super.setFailurePolicy(failurePolicy);
+        for(KeyList list : index.values()) {
+            list.setFailurePolicy(failurePolicy);
+        }
+    }
+
+    /**
+     * Gets a snapshot of the metrics of each wildcard handler, followed by the metrics of each keyed handler
+     * @return A list of metrics snapshots
+     */
+    @Override
+    public List<HandlerMetrics.Snapshot> getMetrics() {
+        List<HandlerMetrics.Snapshot> out = new ArrayList<>(super.getMetrics());
+        for(KeyList list : index.values()) {
+            out.addAll(list.getMetrics());
+        }
+        return out;
+    }
+
+    /**
+     * Removes expired wildcard handlers, and expired keyed handlers from the lists they were registered in
+     * @param dead The handlers whose listeners have been collected
+     */
+    @Override
+    protected void removeExpired(Set<Entry<?>> dead) {
+        super.removeExpired(dead);
+
+        Set<HandlerList<?>> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(Entry<?> wrapped : dead) {
+            if(wrapped instanceof KeyedHandler) {
+                owners.add(((KeyedHandler<?>) wrapped).owner);
+            }
+        }
+        for(HandlerList<?> owner : owners) {
+            owner.removeIf(dead::contains);
+        }
+    }
+
+    /**
+     * The handlers registered for a single key. The list removes itself from the index once it becomes empty.
+     */
+    private class KeyList extends HandlerList<T> {
+
+        private final K key;
+
+        KeyList(K key) {
+            this.key = key;
+        }
+
+        @Override
+        protected boolean remove(WrappedHandler<T> wrapped) {
+            boolean out = super.remove(wrapped);
+            if(out) prune();
+            return out;
+        }
+
+        @Override
+        protected void removeIf(Predicate<WrappedHandler<T>> predicate) {
+            super.removeIf(predicate);
+            prune();
+        }
+
+        /**
+         * Removes this list from the index if it is empty. This is checked again inside the index, since a handler may
+         * be registered for the same key at the same time.
+         */
+        private void prune() {
+            if(isEmpty()) {
+                index.computeIfPresent(key, (k, list) -> list == this && list.isEmpty() ? null : list);
+            }
+        }
+    }
+
+    /**
+     * A keyed handler, which remembers the list it was registered in so it can be removed from it once it expires
+     */
+    private static class KeyedHandler<T> extends WrappedHandler<T> {
+
+        final HandlerList<T> owner;
+
+        KeyedHandler(HandlerList<T> owner, Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler,
+                     ReferenceQueue<Object> queue) {
+            super(listener, priority, ignoreCancelled, handler, queue);
+            this.owner = owner;
+        }
+    }
+
+}
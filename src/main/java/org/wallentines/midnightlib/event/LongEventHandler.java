@@ -0,0 +1,14 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * A functional interface for handling long events without boxing them
+ */
+public interface LongEventHandler {
+
+    /**
+     * Handles an event
+     * @param value The event data
+     */
+    void invoke(long value);
+
+}
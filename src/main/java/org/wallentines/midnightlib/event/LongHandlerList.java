@@ -0,0 +1,28 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * A handler list for events which are a single long, such as a timestamp or a size in bytes. Values are passed to
+ * handlers directly, so they never need to be boxed, and invoking a value does not allocate.
+ * <br/>
+ * Handlers are ordered by priority, and are removed when their listeners are garbage-collected, in the same way as a
+ * {@link HandlerList}.
+ */
+public class LongHandlerList extends AbstractHandlerList<LongEventHandler> {
+
+    /**
+     * Invokes an event
+     * @param value The event data
+     */
+    public void invoke(long value) {
+        for(Entry<LongEventHandler> entry : getHandlers()) {
+            long start = begin(entry);
+            try {
+                entry.handler.invoke(value);
+                succeeded(entry, start);
+            } catch (Throwable th) {
+                failed(entry, th, start);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+package org.wallentines.midnightlib.event;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * A handler list whose handlers can be named, and ordered relative to each other by name instead of only by priority.
+ * A named handler may declare that it must run before or after other named handlers. Constraints which refer to
+ * handlers which are not registered are ignored until those handlers are registered.
+ * <br/>
+ * Constraints are resolved into a topologically sorted snapshot each time a handler is registered, so invoking an
+ * event costs the same as in a plain {@link HandlerList}. Handlers which are not ordered relative to each other by
+ * constraints are ordered by priority, and then by registration order.
+ * @param <T> The type of event to handle
+ */
+public class OrderedHandlerList<T> extends HandlerList<T> {
+
+    private long registrations;
+
+    @Override
+    protected WrappedHandler<T> wrap(Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler, ReferenceQueue<Object> queue) {
+        return new NamedHandler<>(null, Collections.emptySet(), Collections.emptySet(), listener, priority, ignoreCancelled, handler, queue);
+    }
+
+    /**
+     * Registers a new named event handler
+     * @param name The name of the handler, which must be unique in this list
+     * @param listener The registered listener. This can be anything, but if it is garbage-collected, the handler will
+     *                 be removed from the list
+     * @param before The names of the handlers this handler must be called before
+     * @param after The names of the handlers this handler must be called after
+     * @param handler The handler to call when an event is invoked
+     * @return A subscription which can be used to unregister the handler
+     * @throws IllegalArgumentException If the name is already registered, or the constraints form a cycle
+     */
+    public Subscription register(String name, Object listener, Collection<String> before, Collection<String> after, EventHandler<T> handler) {
+        return register(name, listener, 50, false, before, after, handler);
+    }
+
+    /**
+     * Registers a new named event handler
+     * @param name The name of the handler, which must be unique in this list
+     * @param listener The registered listener. This can be anything, but if it is garbage-collected, the handler will
+     *                 be removed from the list
+     * @param priority The priority of the handler, which is used to order it relative to handlers it has no
+     *                 constraints with
+     * @param ignoreCancelled Whether the handler should be skipped for events which are {@link Cancellable} and have
+     *                        been cancelled by an earlier handler
+     * @param before The names of the handlers this handler must be called before
+     * @param after The names of the handlers this handler must be called after
+     * @param handler The handler to call when an event is invoked
+     * @return A subscription which can be used to unregister the handler
+     * @throws IllegalArgumentException If the name is already registered, or the constraints form a cycle
+     */
+    public Subscription register(String name, Object listener, int priority, boolean ignoreCancelled, Collection<String> before, Collection<String> after, EventHandler<T> handler) {
+        if(name == null) throw new IllegalArgumentException("Attempt to register a named handler without a name!");
+        return add(new NamedHandler<>(name, new LinkedHashSet<>(before), new LinkedHashSet<>(after), listener, priority, ignoreCancelled, handler, expired));
+    }
+
+    /**
+     * Gets the names of the named handlers, in the order they will be invoked
+     * @return A list of handler names
+     */
+    public List<String> getOrder() {
+        List<String> out = new ArrayList<>();
+        for(WrappedHandler<T> wrapped : handlers) {
+            String name = ((NamedHandler<T>) wrapped).name;
+            if(name != null) out.add(name);
+        }
+        return out;
+    }
+
+    @Override
+    protected WrappedHandler<T>[] insert(WrappedHandler<T>[] current, WrappedHandler<T> wrapped) {
+
+        NamedHandler<T> added = (NamedHandler<T>) wrapped;
+        added.sequence = registrations++;
+
+        @SuppressWarnings("unchecked")
+        NamedHandler<T>[] nodes = (NamedHandler<T>[]) Arrays.copyOf(current, current.length + 1, NamedHandler[].class);
+        nodes[current.length] = added;
+
+        Map<String, Integer> indices = new HashMap<>();
+        for(int i = 0 ; i < nodes.length ; i++) {
+            String name = nodes[i].name;
+            if(name != null && indices.put(name, i) != null) {
+                registrations--;
+                throw new IllegalArgumentException("A handler named " + name + " is already registered!");
+            }
+        }
+
+        // Build the constraint graph, with an edge from each handler to every handler which must run after it
+        List<List<Integer>> edges = new ArrayList<>(nodes.length);
+        int[] inDegree = new int[nodes.length];
+        for(int i = 0 ; i < nodes.length ; i++) {
+            edges.add(new ArrayList<>());
+        }
+        for(int i = 0 ; i < nodes.length ; i++) {
+            for(String name : nodes[i].before) {
+                Integer target = indices.get(name);
+                if(target != null) {
+                    edges.get(i).add(target);
+                    inDegree[target]++;
+                }
+            }
+            for(String name : nodes[i].after) {
+                Integer source = indices.get(name);
+                if(source != null) {
+                    edges.get(source).add(i);
+                    inDegree[i]++;
+                }
+            }
+        }
+
+        // Kahn's algorithm, choosing the ready handler with the lowest priority and earliest registration first
+        PriorityQueue<Integer> ready = new PriorityQueue<>((a, b) -> {
+            int compare = Integer.compare(nodes[a].priority, nodes[b].priority);
+            return compare != 0 ? compare : Long.compare(nodes[a].sequence, nodes[b].sequence);
+        });
+        for(int i = 0 ; i < nodes.length ; i++) {
+            if(inDegree[i] == 0) ready.add(i);
+        }
+
+        WrappedHandler<T>[] out = Arrays.copyOf(current, current.length + 1);
+        int count = 0;
+        while(!ready.isEmpty()) {
+            int index = ready.poll();
+            out[count++] = nodes[index];
+            for(int next : edges.get(index)) {
+                if(--inDegree[next] == 0) ready.add(next);
+            }
+        }
+
+        if(count < nodes.length) {
+            registrations--;
+            throw new IllegalArgumentException("Handler ordering constraints form a cycle: " + findCycle(nodes, edges, inDegree));
+        }
+        return out;
+    }
+
+    @Override
+    protected int indexOf(WrappedHandler<T>[] snapshot, WrappedHandler<T> wrapped) {
+        for(int i = 0 ; i < snapshot.length ; i++) {
+            if(snapshot[i] == wrapped) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a cycle among the handlers which could not be sorted
+     * @return The names of the handlers in the cycle, in order, with the first name repeated at the end
+     */
+    private static String findCycle(NamedHandler<?>[] nodes, List<List<Integer>> edges, int[] inDegree) {
+
+        // Every unsorted handler has an unsorted predecessor, so walking backwards through them must revisit one
+        int[] predecessor = new int[nodes.length];
+        for(int i = 0 ; i < nodes.length ; i++) {
+            if(inDegree[i] == 0) continue;
+            for(int next : edges.get(i)) {
+                if(inDegree[next] > 0) predecessor[next] = i;
+            }
+        }
+
+        int start = 0;
+        while(inDegree[start] == 0) {
+            start++;
+        }
+
+        Map<Integer, Integer> visited = new HashMap<>();
+        List<Integer> path = new ArrayList<>();
+        int current = start;
+        while(!visited.containsKey(current)) {
+            visited.put(current, path.size());
+            path.add(current);
+            current = predecessor[current];
+        }
+
+        List<Integer> cycle = new ArrayList<>(path.subList(visited.get(current), path.size()));
+        Collections.reverse(cycle);
+
+        StringBuilder out = new StringBuilder();
+        for(int index : cycle) {
+            out.append(nodes[index].name).append(" -> ");
+        }
+        return out.append(nodes[cycle.get(0)].name).toString();
+    }
+
+    private static class NamedHandler<T> extends WrappedHandler<T> {
+
+        final String name;
+        final Set<String> before;
+        final Set<String> after;
+
+        /**
+         * The order this handler was registered in, used to break ties between handlers with equal priorities
+         */
+        long sequence;
+
+        NamedHandler(String name, Set<String> before, Set<String> after, Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler, ReferenceQueue<Object> queue) {
+            super(listener, priority, ignoreCancelled, handler, queue);
+            this.name = name;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A failure policy which logs at most one stack trace per handler in each time window. Failures within a window are
+ * counted instead, and the count is reported once the window ends, e.g. "Event handler X failed 1200 more times in
+ * the last 60 s". Optionally, handlers which fail too many times in a row are unregistered.
+ * <br/>
+ * Counts are reported the next time the handler fails, when it is disabled, when {@link #flush()} or
+ * {@link #getSuppressedCount(Object)} is called after its window ends, or when the policy is closed. If a scheduler is
+ * given, every ended window is also flushed periodically, so a handler which stops failing still has its count reported.
+ */
+public class RateLimitedFailurePolicy implements FailurePolicy, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    private final long windowNanos;
+    private final int disableAfter;
+    private final Map<Object, Window> windows = Collections.synchronizedMap(new WeakHashMap<>());
+    private volatile ScheduledFuture<?> flushTask;
+
+    /**
+     * Creates a failure policy which never disables handlers
+     * @param window How long to wait after logging a handler's exception before logging another
+     */
+    public RateLimitedFailurePolicy(Duration window) {
+        this(window, 0);
+    }
+
+    /**
+     * Creates a failure policy
+     * @param window How long to wait after logging a handler's exception before logging another
+     * @param disableAfter How many consecutive failures a handler may have before it is unregistered, or 0 to never
+     *                     unregister handlers
+     */
+    public RateLimitedFailurePolicy(Duration window, int disableAfter) {
+        if(window.isNegative()) throw new IllegalArgumentException("Failure window cannot be negative!");
+        if(disableAfter < 0) throw new IllegalArgumentException("Failure limit cannot be negative!");
+        this.windowNanos = window.toNanos();
+        this.disableAfter = disableAfter;
+    }
+
+    /**
+     * Creates a failure policy which reports suppressed failures soon after their window ends. The policy should be
+     * {@link #close() closed} once it is no longer used, so it stops being flushed.
+     * @param window How long to wait after logging a handler's exception before logging another
+     * @param disableAfter How many consecutive failures a handler may have before it is unregistered, or 0 to never
+     *                     unregister handlers
+     * @param scheduler The executor to periodically {@link #flush() flush} ended windows on
+     * @return A new failure policy
+     */
+    public static RateLimitedFailurePolicy scheduled(Duration window, int disableAfter, ScheduledExecutorService scheduler) {
+        RateLimitedFailurePolicy out = new RateLimitedFailurePolicy(window, disableAfter);
+
+        // Scheduled once the policy is fully constructed, since the first flush may run immediately after
+        if(out.windowNanos > 0L) {
+            out.flushTask = scheduler.scheduleAtFixedRate(out::flush, out.windowNanos, out.windowNanos, TimeUnit.NANOSECONDS);
+        }
+        return out;
+    }
+
+    @Override
+    public boolean onFailure(Object handler, Throwable th, int consecutiveFailures) {
+
+        long now = System.nanoTime();
+        Window window = windows.computeIfAbsent(handler, k -> new Window(now - windowNanos));
+
+        boolean log = false;
+        int suppressed;
+        long elapsed;
+        synchronized (window) {
+            elapsed = now - window.start;
+            if(elapsed >= windowNanos) {
+                log = true;
+                suppressed = window.suppressed;
+                window.suppressed = 0;
+                window.start = now;
+            } else {
+                suppressed = ++window.suppressed;
+            }
+        }
+
+        if(log) {
+            if(suppressed > 0) {
+                report(handler, suppressed, elapsed);
+            }
+            LOGGER.warn("An exception was thrown while an event was being handled by {}!", handler, th);
+        }
+
+        if(disableAfter > 0 && consecutiveFailures >= disableAfter) {
+            // The handler will never fail again, so its suppressed failures are reported now
+            flush(handler, windows.remove(handler), now, true);
+            LOGGER.error("Event handler {} failed {} times in a row and was disabled!", handler, consecutiveFailures);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of failures of the given handler which have not been logged yet. If the handler's window has
+     * ended, its suppressed failures are logged first.
+     * @param handler The handler to lookup
+     * @return The number of suppressed failures in the handler's current window
+     */
+    public int getSuppressedCount(Object handler) {
+        Window window = windows.get(handler);
+        if(window == null) return 0;
+        flush(handler, window, System.nanoTime(), false);
+        synchronized (window) {
+            return window.suppressed;
+        }
+    }
+
+    /**
+     * Logs the suppressed failures of every handler whose window has ended
+     */
+    public void flush() {
+        flushAll(false);
+    }
+
+    /**
+     * Stops flushing periodically, and logs the suppressed failures of every handler, even if its window has not
+     * ended yet
+     */
+    @Override
+    public void close() {
+        ScheduledFuture<?> task = flushTask;
+        if(task != null) {
+            task.cancel(false);
+        }
+        flushAll(true);
+    }
+
+    private void flushAll(boolean force) {
+
+        long now = System.nanoTime();
+        List<Object> handlers = new ArrayList<>();
+        List<Window> pending = new ArrayList<>();
+        synchronized (windows) {
+            for(Map.Entry<Object, Window> entry : windows.entrySet()) {
+                Object handler = entry.getKey();
+                if(handler != null) {
+                    handlers.add(handler);
+                    pending.add(entry.getValue());
+                }
+            }
+        }
+        for(int i = 0 ; i < handlers.size() ; i++) {
+            flush(handlers.get(i), pending.get(i), now, force);
+        }
+    }
+
+    /**
+     * Logs and clears the suppressed failures in a window. The window itself is left open, so the handler's next
+     * failure is still logged in full if the window has ended.
+     * @param handler The handler the window belongs to
+     * @param window The window to flush, or null
+     * @param now The current {@link System#nanoTime()}
+     * @param force Whether to flush the window even if it has not ended
+     */
+    private void flush(Object handler, Window window, long now, boolean force) {
+
+        if(window == null) return;
+
+        int suppressed;
+        long elapsed;
+        synchronized (window) {
+            elapsed = now - window.start;
+            if(window.suppressed == 0 || (!force && elapsed < windowNanos)) return;
+            suppressed = window.suppressed;
+            window.suppressed = 0;
+        }
+        report(handler, suppressed, elapsed);
+    }
+
+    private static void report(Object handler, int suppressed, long elapsed) {
+        LOGGER.warn("Event handler {} failed {} more times in the last {} s", handler, suppressed, TimeUnit.NANOSECONDS.toSeconds(elapsed));
+    }
+
+    private static class Window {
+
+        long start;
+        int suppressed;
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+
+}
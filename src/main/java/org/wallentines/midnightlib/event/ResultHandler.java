@@ -0,0 +1,17 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * A functional interface for handling events which produce a result, such as votes on whether an action may proceed
+ * @param <T> The type of event to handle
+ * @param <R> The type of result the handler produces
+ */
+public interface ResultHandler<T, R> {
+
+    /**
+     * Handles an event
+     * @param event The event data
+     * @return The handler's result
+     */
+    R invoke(T event);
+
+}
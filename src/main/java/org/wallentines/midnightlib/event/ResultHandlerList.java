@@ -0,0 +1,107 @@
+package org.wallentines.midnightlib.event;
+
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * A handler list whose handlers return results, which are combined into a single result for each event. Results are
+ * combined with a reducer, which must be associative and have the given identity as its neutral element. Handlers
+ * which throw an exception contribute the identity.
+ * <br/>
+ * An optional short-circuit predicate identifies absorbing results, which cannot be changed by combining them with
+ * any further results, such as {@code false} when combining with logical and. Once the combined result is absorbing,
+ * the remaining handlers are skipped.
+ * @param <T> The type of event to handle
+ * @param <R> The type of result the handlers produce
+ */
+public class ResultHandlerList<T, R> extends AbstractHandlerList<ResultHandler<T, R>> {
+
+    protected final R identity;
+    protected final BinaryOperator<R> reducer;
+    protected final Predicate<? super R> shortCircuit;
+
+    /**
+     * Creates a result handler list which always calls every handler
+     * @param identity The result of an event with no handlers
+     * @param reducer An associative function which combines two results
+     */
+    public ResultHandlerList(R identity, BinaryOperator<R> reducer) {
+        this(identity, reducer, null);
+    }
+
+    /**
+     * Creates a result handler list
+     * @param identity The result of an event with no handlers
+     * @param reducer An associative function which combines two results
+     * @param shortCircuit A predicate which determines whether a result is absorbing, or null if no result is
+     */
+    public ResultHandlerList(R identity, BinaryOperator<R> reducer, Predicate<? super R> shortCircuit) {
+        this.identity = identity;
+        this.reducer = reducer;
+        this.shortCircuit = shortCircuit;
+    }
+
+    /**
+     * Creates a result handler list for votes which must all succeed. The combined result is false as soon as any
+     * handler returns false.
+     * @param <T> The type of event to handle
+     * @return A new result handler list
+     */
+    public static <T> ResultHandlerList<T, Boolean> allMatch() {
+        return new ResultHandlerList<>(true, (a, b) -> a && b, result -> !result);
+    }
+
+    /**
+     * Creates a result handler list for votes which need any handler to succeed. The combined result is true as soon
+     * as any handler returns true.
+     * @param <T> The type of event to handle
+     * @return A new result handler list
+     */
+    public static <T> ResultHandlerList<T, Boolean> anyMatch() {
+        return new ResultHandlerList<>(false, (a, b) -> a || b, result -> result);
+    }
+
+    /**
+     * Invokes an event, and combines the results of its handlers in priority order
+     * @param event The event to invoke
+     * @return The combined result
+     */
+    public R invoke(T event) {
+
+        R out = identity;
+        for(Entry<ResultHandler<T, R>> entry : getHandlers()) {
+            out = reducer.apply(out, call(entry, event));
+            if(isAbsorbing(out)) break;
+        }
+        return out;
+    }
+
+    /**
+     * Determines whether the given result cannot be changed by combining it with further results
+     * @param result The result to check
+     * @return Whether the remaining handlers can be skipped
+     */
+    protected boolean isAbsorbing(R result) {
+        return shortCircuit != null && shortCircuit.test(result);
+    }
+
+    /**
+     * Calls a single handler, recording its metrics if instrumentation is enabled
+     * @param entry The handler to call
+     * @param event The event to handle
+     * @return The handler's result, or the identity if it threw an exception
+     */
+    protected R call(Entry<ResultHandler<T, R>> entry, T event) {
+
+        long start = begin(entry);
+        try {
+            R out = entry.handler.invoke(event);
+            succeeded(entry, start);
+            return out;
+        } catch (Throwable th) {
+            failed(entry, th, start);
+            return identity;
+        }
+    }
+
+}
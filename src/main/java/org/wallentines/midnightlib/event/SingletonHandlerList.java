@@ -1,36 +1,163 @@
 package org.wallentines.midnightlib.event;
 
+import java.lang.ref.ReferenceQueue;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * A handler list which will retain its event after it is invoked. All subsequent calls to
- * {@link HandlerList#register(Object, EventHandler) register} will result in the handler being called immediately
+ * {@link HandlerList#register(Object, EventHandler) register} will result in the handler being called immediately.
+ * <br/>
+ * The list behaves like a latch: only the first event invoked after the list is created or {@link #reset() reset} is
+ * retained, and later events are ignored until the list is reset again. Every handler receives the retained event
+ * exactly once, even if it is registered at the same time as the event is invoked on another thread.
  * @param <T> The type of event to handle
  */
 public class SingletonHandlerList<T> extends HandlerList<T> {
 
-    private T completed = null;
+    private final AtomicReference<Latch<T>> latch = new AtomicReference<>(new Latch<>(null, new CompletableFuture<>()));
 
+    /**
+     * Retains and invokes an event, if no event has been retained yet
+     * @param event The event to invoke
+     */
     @Override
     public void invoke(T event) {
+
+        if(event == null) return;
+
+        Latch<T> current;
+        Latch<T> completed;
+        do {
+            current = latch.get();
+            if(current.value != null) return;
+            completed = new Latch<>(event, current.future);
+        } while(!latch.compareAndSet(current, completed));
+
         super.invoke(event);
-        completed = event;
+        completed.future.complete(event);
     }
 
+    /**
+     * Invokes each event in turn, since only one event can be retained
+     * @param events The events to invoke
+     */
     @Override
-    public void register(Object listener, int priority, EventHandler<T> handler) {
-        super.register(listener, priority, handler);
-        if(completed != null) {
-            handle(handler, completed);
+    public void invokeAll(Collection<? extends T> events) {
+        for(T event : events) {
+            invoke(event);
         }
     }
 
+    /**
+     * Invokes each event in turn, since only one event can be retained
+     * @param events The events to invoke
+     * @param start The index of the first event to invoke
+     * @param end The index after the last event to invoke
+     */
+    @Override
+    public void invokeAll(T[] events, int start, int end) {
+        for(int i = start ; i < end ; i++) {
+            invoke(events[i]);
+        }
+    }
+
+    @Override
+    protected WrappedHandler<T> wrap(Object listener, int priority, boolean ignoreCancelled, EventHandler<T> handler, ReferenceQueue<Object> queue) {
+        return super.wrap(listener, priority, ignoreCancelled, new OnceHandler(handler), queue);
+    }
+
+    @Override
+    protected Subscription add(WrappedHandler<T> wrapped) {
+
+        Subscription out = super.add(wrapped);
+
+        // The handler is published before the latch is read, and the latch is published before the handlers are read
+        // by invoke, so at least one of the two will deliver the event. The handler itself ensures at most one does.
+        T completed = latch.get().value;
+        if(completed != null && !(wrapped.ignoreCancelled && isCancelled(completed))) {
+            handle(wrapped, completed);
+        }
+        return out;
+    }
+
     public T getPreviousValue() {
-        return completed;
+        return latch.get().value;
+    }
+
+    /**
+     * Gets a future which will complete with the retained event. If an event has already been retained, the future
+     * will already be complete.
+     * @return A future for the retained event
+     */
+    public CompletableFuture<T> getFuture() {
+        return latch.get().future;
+    }
+
+    /**
+     * Waits until an event is retained
+     * @return The retained event
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public T await() throws InterruptedException {
+        try {
+            return getFuture().get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Singleton future completed exceptionally!", ex.getCause());
+        }
     }
 
     /**
      * Clears the stored event
      */
     public void reset() {
-        completed = null;
+        Latch<T> current;
+        do {
+            current = latch.get();
+            if(current.value == null) return;
+        } while(!latch.compareAndSet(current, new Latch<>(null, new CompletableFuture<>())));
+    }
+
+    /**
+     * A single generation of the latch. The latch is open while its value is null
+     */
+    private static class Latch<T> {
+
+        final T value;
+        final CompletableFuture<T> future;
+
+        Latch(T value, CompletableFuture<T> future) {
+            this.value = value;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Wraps a registered handler so it is only called once per retained event
+     */
+    private class OnceHandler implements EventHandler<T> {
+
+        private final EventHandler<T> handler;
+        private final AtomicReference<Latch<T>> delivered = new AtomicReference<>();
+
+        OnceHandler(EventHandler<T> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void invoke(T event) {
+
+            // The latch is read once, so the event and the generation it is delivered for always match. Events from a
+            // generation which has since been reset are skipped, since the newer event will be delivered instead
+            Latch<T> current = latch.get();
+            if(event == null || current.value != event) return;
+
+            Latch<T> previous = delivered.get();
+            if(previous != current && delivered.compareAndSet(previous, current)) {
+                handler.invoke(event);
+            }
+        }
     }
 }
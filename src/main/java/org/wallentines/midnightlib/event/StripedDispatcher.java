@@ -0,0 +1,192 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Dispatches events to a handler list on an executor, keeping events with the same key in order while events with
+ * different keys are handled in parallel. Each event's key is hashed onto one of a fixed number of serial lanes. Each
+ * lane runs on the executor at most once at a time, and handles its events in the order they were dispatched.
+ * <br/>
+ * Events with different keys may share a lane, in which case they are also handled in order relative to each other.
+ * @param <K> The type of key events are ordered by
+ * @param <T> The type of event to handle. This should be read-only or otherwise thread safe.
+ */
+public class StripedDispatcher<K, T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    /**
+     * The maximum number of events a lane handles before yielding its thread back to the executor
+     */
+    private static final int LANE_BATCH = 256;
+
+    private final Function<? super T, ? extends K> keyExtractor;
+    private final Lane<T>[] lanes;
+
+    /**
+     * Creates a striped dispatcher with one lane per available processor
+     * @param handlers The handler list to invoke events on
+     * @param keyExtractor A function which determines the key of an event
+     * @param executor The executor to run lanes on
+     */
+    public StripedDispatcher(HandlerList<T> handlers, Function<? super T, ? extends K> keyExtractor, Executor executor) {
+        this(handlers, keyExtractor, executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a striped dispatcher
+     * @param handlers The handler list to invoke events on
+     * @param keyExtractor A function which determines the key of an event
+     * @param executor The executor to run lanes on
+     * @param lanes The number of serial lanes. This is the maximum number of events which can be handled at once
+     */
+    public StripedDispatcher(HandlerList<T> handlers, Function<? super T, ? extends K> keyExtractor, Executor executor, int lanes) {
+        if(lanes < 1) throw new IllegalArgumentException("A striped dispatcher must have at least 1 lane!");
+        this.keyExtractor = keyExtractor;
+        this.lanes = newLanes(lanes);
+        for(int i = 0 ; i < lanes ; i++) {
+            this.lanes[i] = new Lane<>(handlers, executor);
+        }
+    }
+
+    /**
+     * Queues an event on the lane for its key
+     * @param event The event to dispatch
+     */
+    public void dispatch(T event) {
+        if(event == null) return;
+        lanes[getLane(keyExtractor.apply(event))].offer(event);
+    }
+
+    /**
+     * Determines which lane events with the given key are dispatched on
+     * @param key The key to lookup
+     * @return The index of the lane
+     */
+    public int getLane(K key) {
+        if(key == null) return 0;
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, lanes.length);
+    }
+
+    /**
+     * Gets the number of lanes
+     * @return The number of lanes
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Gets the number of events queued on the given lane, including any event which is currently being handled
+     * @param lane The index of the lane
+     * @return The depth of the lane
+     */
+    public int getDepth(int lane) {
+        return lanes[lane].depth.get();
+    }
+
+    /**
+     * Gets the greatest depth the given lane has ever reached
+     * @param lane The index of the lane
+     * @return The maximum depth of the lane
+     */
+    public int getMaxDepth(int lane) {
+        return lanes[lane].maxDepth.get();
+    }
+
+    /**
+     * Gets the depth of each lane
+     * @return An array containing the depth of each lane
+     */
+    public int[] getDepths() {
+        int[] out = new int[lanes.length];
+        for(int i = 0 ; i < lanes.length ; i++) {
+            out[i] = lanes[i].depth.get();
+        }
+        return out;
+    }
+
+    /**
+     * Gets the number of events queued on all lanes, including any events which are currently being handled
+     * @return The total depth of all lanes
+     */
+    public int getTotalDepth() {
+        int out = 0;
+        for(Lane<T> lane : lanes) {
+            out += lane.depth.get();
+        }
+        return out;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Lane<T>[] newLanes(int size) {
+        return (Lane<T>[]) new Lane[size];
+    }
+
+    private static class Lane<T> implements Runnable {
+
+        private final HandlerList<T> handlers;
+        private final Executor executor;
+        private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Lane(HandlerList<T> handlers, Executor executor) {
+            this.handlers = handlers;
+            this.executor = executor;
+        }
+
+        void offer(T event) {
+            // Counted before the event is queued, so the depth never drops below zero
+            int current = depth.incrementAndGet();
+            maxDepth.accumulateAndGet(current, Math::max);
+            queue.offer(event);
+            schedule();
+        }
+
+        private void schedule() {
+            if(scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException ex) {
+                    scheduled.set(false);
+                    throw ex;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+
+            T event;
+            int handled = 0;
+            while(handled < LANE_BATCH && (event = queue.poll()) != null) {
+                try {
+                    handlers.invoke(event);
+                } catch (Throwable th) {
+                    LOGGER.error("An exception was thrown while dispatching a striped event!", th);
+                }
+                depth.decrementAndGet();
+                handled++;
+            }
+
+            scheduled.set(false);
+
+            // An event may have been queued after the last poll but before the lane was released
+            if(!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+}
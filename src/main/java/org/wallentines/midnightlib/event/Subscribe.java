@@ -0,0 +1,29 @@
+package org.wallentines.midnightlib.event;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method as a handler for global events. The method must not be static, and must take exactly one parameter,
+ * whose type is the type of event to handle. Annotated methods are registered using {@link Event#register(Object)}
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Subscribe {
+
+    /**
+     * The priority of the handler. Handlers with lower priorities will be called first
+     * @return The handler's priority
+     */
+    int priority() default 50;
+
+    /**
+     * Whether the handler should be skipped for events which are {@link Cancellable} and have been cancelled by an
+     * earlier handler
+     * @return Whether the handler ignores cancelled events
+     */
+    boolean ignoreCancelled() default false;
+
+}
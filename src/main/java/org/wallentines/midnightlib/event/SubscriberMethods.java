@@ -0,0 +1,174 @@
+package org.wallentines.midnightlib.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds and binds the {@link Subscribe} methods of listener classes. Each class is scanned once, and each of its
+ * methods is compiled into a factory using {@link LambdaMetafactory}. The factory binds a listener instance directly
+ * into an {@link EventHandler}, so each dispatch is a single direct call to the subscriber method, just like a
+ * hand-written lambda.
+ */
+final class SubscriberMethods {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Event");
+
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Object.class);
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(EventHandler.class, Object.class);
+
+    private static final ClassValue<SubscriberMethod[]> METHODS = new ClassValue<SubscriberMethod[]>() {
+        @Override
+        protected SubscriberMethod[] computeValue(Class<?> type) {
+            return scan(type);
+        }
+    };
+
+    private SubscriberMethods() { }
+
+    /**
+     * Gets the subscriber methods of the given listener class and its superclasses
+     * @param type The listener class
+     * @return The subscriber methods. This array is shared, and must not be modified
+     */
+    static SubscriberMethod[] get(Class<?> type) {
+        return METHODS.get(type);
+    }
+
+    private static SubscriberMethod[] scan(Class<?> type) {
+
+        List<SubscriberMethod> out = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        for(Class<?> clazz = type ; clazz != null && clazz != Object.class ; clazz = clazz.getSuperclass()) {
+            for(Method method : clazz.getDeclaredMethods()) {
+
+                Subscribe subscribe = method.getAnnotation(Subscribe.class);
+                if(subscribe == null || method.isBridge() || method.isSynthetic()) continue;
+
+                if(Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1 || method.getParameterTypes()[0].isPrimitive()) {
+                    throw new IllegalArgumentException("Subscriber method " + method + " must not be static, and must have exactly one non-primitive parameter!");
+                }
+
+                // Skip methods which are overridden by a subclass
+                if(!Modifier.isPrivate(method.getModifiers()) && !seen.add(method.getName() + method.getParameterTypes()[0].getName())) {
+                    continue;
+                }
+
+                out.add(new SubscriberMethod(method.getParameterTypes()[0], subscribe.priority(), subscribe.ignoreCancelled(), compile(clazz, method)));
+            }
+        }
+
+        return out.toArray(new SubscriberMethod[0]);
+    }
+
+    private static Binder compile(Class<?> owner, Method method) {
+
+        MethodHandles.Lookup lookup = lookupIn(owner);
+        MethodHandle handle;
+        try {
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException ex) {
+            try {
+                method.setAccessible(true);
+                handle = lookup.unreflect(method);
+            } catch (RuntimeException | IllegalAccessException ex2) {
+                throw new IllegalArgumentException("Unable to access subscriber method " + method + "!", ex2);
+            }
+        }
+
+        try {
+            // The listener is captured as the receiver, so the generated handler calls the method directly
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "invoke",
+                    MethodType.methodType(EventHandler.class, owner),
+                    HANDLER_TYPE,
+                    handle,
+                    MethodType.methodType(void.class, method.getParameterTypes()[0]));
+            MethodHandle factory = site.getTarget().asType(FACTORY_TYPE);
+            return listener -> {
+                try {
+                    return (EventHandler<?>) factory.invokeExact(listener);
+                } catch (Throwable th) {
+                    throw SubscriberMethods.<RuntimeException>sneakyThrow(th);
+                }
+            };
+        } catch (Throwable th) {
+            // The lookup could not see the method directly, so fall back to calling the method handle
+            LOGGER.debug("Unable to compile subscriber method {}. It will be invoked through a method handle", method, th);
+            MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return listener -> {
+                MethodHandle bound = generic.bindTo(listener);
+                return event -> {
+                    try {
+                        bound.invokeExact(event);
+                    } catch (Throwable th2) {
+                        throw SubscriberMethods.<RuntimeException>sneakyThrow(th2);
+                    }
+                };
+            };
+        }
+    }
+
+    /**
+     * Gets a lookup with private access to the given class, so lambdas can be defined alongside it. If that is not
+     * possible, our own lookup is used, and only accessible methods can be compiled
+     * @param owner The class which declares subscriber methods
+     * @return A lookup for binding the class's methods
+     */
+    private static MethodHandles.Lookup lookupIn(Class<?> owner) {
+        try {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+        } catch (Exception ex) {
+            return MethodHandles.lookup();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> E sneakyThrow(Throwable th) throws E {
+        throw (E) th;
+    }
+
+    /**
+     * Creates an event handler which calls a subscriber method on a listener instance
+     */
+    interface Binder {
+        EventHandler<?> bind(Object listener);
+    }
+
+    static final class SubscriberMethod {
+
+        final Class<?> eventType;
+        final int priority;
+        final boolean ignoreCancelled;
+        final Binder binder;
+
+        SubscriberMethod(Class<?> eventType, int priority, boolean ignoreCancelled, Binder binder) {
+            this.eventType = eventType;
+            this.priority = priority;
+            this.ignoreCancelled = ignoreCancelled;
+            this.binder = binder;
+        }
+
+        /**
+         * Creates an event handler which calls this method on the given listener. Like a lambda which calls the
+         * method, the handler references the listener strongly
+         * @param listener The listener to call the method on
+         * @return A new event handler
+         * @param <T> The type of event to handle
+         */
+        @SuppressWarnings("unchecked")
+        <T> EventHandler<T> bind(Object listener) {
+            return (EventHandler<T>) binder.bind(listener);
+        }
+    }
+
+}
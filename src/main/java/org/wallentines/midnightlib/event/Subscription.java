@@ -0,0 +1,20 @@
+package org.wallentines.midnightlib.event;
+
+/**
+ * A handle to a single registered event handler, which can be used to unregister it without searching for it
+ */
+public interface Subscription {
+
+    /**
+     * Unregisters the handler. Calling this more than once has no effect.
+     */
+    void unregister();
+
+    /**
+     * Determines whether the handler is still registered. This will be false after the handler is unregistered, or
+     * after its listener is garbage-collected and the handler is removed from its list.
+     * @return Whether the handler is still registered
+     */
+    boolean isRegistered();
+
+}
@@ -0,0 +1,177 @@
+package org.wallentines.midnightlib.event;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A reverse index from listeners to the subscriptions they were registered with, so all of a listener's handlers can
+ * be unregistered without visiting any other handlers. Listeners are compared by identity. Listeners of ordinary
+ * registrations are only weakly referenced, so indexing them does not keep them from being garbage-collected. Strongly
+ * registered listeners are kept in a separate index with strong keys, since their handlers keep them alive anyway.
+ */
+final class SubscriptionIndex {
+
+    private final ConcurrentHashMap<ListenerKey, List<Subscription>> index = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<StrongKey, List<Subscription>> strongIndex = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> expired = new ReferenceQueue<>();
+
+    /**
+     * Adds a subscription to the index
+     * @param listener The listener the subscription was registered with
+     * @param subscription The subscription to index
+     * @return A subscription which also removes itself from the index when it is unregistered
+     */
+    Subscription add(Object listener, Subscription subscription) {
+
+        purge();
+        return add(index, new ListenerKey(listener, expired), subscription);
+    }
+
+    /**
+     * Adds a subscription whose listener is strongly referenced to the index. No weak reference is allocated for the
+     * listener.
+     * @param listener The listener the subscription was registered with
+     * @param subscription The subscription to index
+     * @return A subscription which also removes itself from the index when it is unregistered
+     */
+    Subscription addStrong(Object listener, Subscription subscription) {
+        return add(strongIndex, new StrongKey(listener), subscription);
+    }
+
+    /**
+     * Unregisters and removes every subscription registered with the given listener
+     * @param listener The listener to lookup
+     */
+    void unregisterAll(Object listener) {
+
+        purge();
+        unregister(index.remove(new ListenerKey(listener, null)));
+        unregister(strongIndex.remove(new StrongKey(listener)));
+    }
+
+    /**
+     * Removes strongly keyed subscriptions which have been unregistered without going through the index, such as
+     * when their whole handler list was cleared, so their listeners are no longer kept alive by the index. This visits
+     * every strongly registered listener, so it should only be called after clearing a whole list. Subscriptions which
+     * are unregistered individually remove themselves, along with their listener's entry once it is empty.
+     */
+    void sweep() {
+        for(StrongKey key : strongIndex.keySet()) {
+            strongIndex.computeIfPresent(key, (k, subscriptions) -> {
+                subscriptions.removeIf(subscription -> !subscription.isRegistered());
+                return subscriptions.isEmpty() ? null : subscriptions;
+            });
+        }
+    }
+
+    /**
+     * Removes the entries of listeners which have been garbage-collected. Their handlers are removed from their lists
+     * separately, so the subscriptions do not need to be unregistered.
+     */
+    private void purge() {
+        Reference<?> ref;
+        while((ref = expired.poll()) != null) {
+            index.remove((ListenerKey) ref);
+        }
+    }
+
+    private static <K> Subscription add(ConcurrentHashMap<K, List<Subscription>> map, K key, Subscription subscription) {
+
+        IndexedSubscription<K> out = new IndexedSubscription<>(map, key, subscription);
+
+        // Modified inside compute() so a list cannot be removed from the index while it is being added to
+        map.compute(key, (k, subscriptions) -> {
+            if(subscriptions == null) subscriptions = new ArrayList<>(4);
+            subscriptions.add(out);
+            return subscriptions;
+        });
+        return out;
+    }
+
+    private static void unregister(List<Subscription> subscriptions) {
+        if(subscriptions == null) return;
+        for(Subscription subscription : subscriptions) {
+            ((IndexedSubscription<?>) subscription).subscription.unregister();
+        }
+    }
+
+    private static class IndexedSubscription<K> implements Subscription {
+
+        private final ConcurrentHashMap<K, List<Subscription>> map;
+        private final K key;
+        private final Subscription subscription;
+
+        IndexedSubscription(ConcurrentHashMap<K, List<Subscription>> map, K key, Subscription subscription) {
+            this.map = map;
+            this.key = key;
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void unregister() {
+            subscription.unregister();
+            map.computeIfPresent(key, (k, subscriptions) -> {
+                subscriptions.remove(this);
+                return subscriptions.isEmpty() ? null : subscriptions;
+            });
+        }
+
+        @Override
+        public boolean isRegistered() {
+            return subscription.isRegistered();
+        }
+    }
+
+    /**
+     * A weak reference to a listener which is equal to any other key for the same listener
+     */
+    private static final class ListenerKey extends WeakReference<Object> {
+
+        private final int hash;
+
+        ListenerKey(Object listener, ReferenceQueue<Object> queue) {
+            super(listener, queue);
+            this.hash = System.identityHashCode(listener);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(this == other) return true;
+            if(!(other instanceof ListenerKey)) return false;
+            Object listener = get();
+            return listener != null && listener == ((ListenerKey) other).get();
+        }
+    }
+
+    /**
+     * A strong reference to a listener which is equal to any other key for the same listener
+     */
+    private static final class StrongKey {
+
+        private final Object listener;
+
+        StrongKey(Object listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(listener);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StrongKey && listener == ((StrongKey) other).listener;
+        }
+    }
+
+}
@@ -1,13 +1,56 @@
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.wallentines.mdcfg.serializer.Serializer;
+import org.wallentines.midnightlib.event.AsyncEventBus;
+import org.wallentines.midnightlib.event.Cancellable;
+import org.wallentines.midnightlib.event.CoalescingHandlerList;
 import org.wallentines.midnightlib.event.ConcurrentHandlerList;
+import org.wallentines.midnightlib.event.ConcurrentResultHandlerList;
+import org.wallentines.midnightlib.event.DeferredEventQueue;
+import org.wallentines.midnightlib.event.DoubleHandlerList;
 import org.wallentines.midnightlib.event.Event;
+import org.wallentines.midnightlib.event.EventBridgeReader;
+import org.wallentines.midnightlib.event.EventBridgeWriter;
+import org.wallentines.midnightlib.event.EventHandler;
+import org.wallentines.midnightlib.event.EventJournal;
 import org.wallentines.midnightlib.event.HandlerList;
+import org.wallentines.midnightlib.event.HandlerMetrics;
+import org.wallentines.midnightlib.event.IntEventHandler;
+import org.wallentines.midnightlib.event.IntHandlerList;
+import org.wallentines.midnightlib.event.JournalReplay;
+import org.wallentines.midnightlib.event.KeyedHandlerList;
+import org.wallentines.midnightlib.event.LongHandlerList;
+import org.wallentines.midnightlib.event.OrderedHandlerList;
+import org.wallentines.midnightlib.event.RateLimitedFailurePolicy;
+import org.wallentines.midnightlib.event.ResultHandlerList;
 import org.wallentines.midnightlib.event.SingletonHandlerList;
+import org.wallentines.midnightlib.event.StripedDispatcher;
+import org.wallentines.midnightlib.event.Subscribe;
+import org.wallentines.midnightlib.event.Subscription;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestEvents {
@@ -82,6 +125,66 @@ public class TestEvents {
 
     }
 
+    private interface MarkerEvent { }
+    private static class BaseEvent { }
+    private static class DerivedEvent extends BaseEvent implements MarkerEvent { }
+
+    @Test
+    public void testGlobalHierarchy() {
+
+        StringBuilder order = new StringBuilder();
+
+        Event.register(DerivedEvent.class, this, ev -> order.append("derived;"));
+        Event.invoke(new DerivedEvent());
+        Assertions.assertEquals("derived;", order.toString());
+
+        // Lists created after the chain was cached must still be picked up
+        Event.register(MarkerEvent.class, this, ev -> order.append("marker;"));
+        Event.register(BaseEvent.class, this, ev -> order.append("base;"));
+
+        order.setLength(0);
+        Event.invoke(new DerivedEvent());
+        Assertions.assertEquals("derived;base;marker;", order.toString());
+
+        order.setLength(0);
+        Event.invoke(new BaseEvent());
+        Assertions.assertEquals("base;", order.toString());
+
+        Event.unregisterAll(this);
+        order.setLength(0);
+        Event.invoke(new DerivedEvent());
+        Assertions.assertEquals("", order.toString());
+
+    }
+
+    private static class GlobalConcurrentEvent { }
+
+    @Test
+    public void testGlobalConcurrentRegister() throws InterruptedException {
+
+        AtomicInteger handled = new AtomicInteger();
+
+        ThreadPoolExecutor exe = new ThreadPoolExecutor(8, 100, 5000L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100));
+        for(int i = 0; i < 100 ; i++) {
+            exe.submit(() -> {
+                Event.register(GlobalConcurrentEvent.class, this, ev -> handled.getAndIncrement());
+                Event.invoke(new GlobalConcurrentEvent());
+            });
+        }
+        exe.shutdown();
+        Assertions.assertTrue(exe.awaitTermination(5000L, TimeUnit.MILLISECONDS));
+
+        handled.set(0);
+        Event.invoke(new GlobalConcurrentEvent());
+        Assertions.assertEquals(100, handled.get());
+
+        Event.unregisterAll(GlobalConcurrentEvent.class);
+        handled.set(0);
+        Event.invoke(new GlobalConcurrentEvent());
+        Assertions.assertEquals(0, handled.get());
+
+    }
+
     @Test
     public void testPriority() {
 
@@ -97,7 +200,7 @@ public class TestEvents {
         handlers.register(this, 1, ev -> ev.value = "modified");
 
         handlers.invoke(event);
-        Assertions.assertEquals("first", event.value);
+        Assertions.assertEquals("priority", event.value);
 
     }
 
@@ -140,6 +243,26 @@ public class TestEvents {
     }
 
 
+    @Test
+    public void testExpiredListener() {
+
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        AtomicInteger handled = new AtomicInteger();
+
+        handlers.register(new Object(), ev -> handled.getAndIncrement());
+        handlers.register(this, ev -> handled.getAndIncrement());
+
+        for(int i = 0 ; i < 50 && handled.get() != 1 ; i++) {
+            System.gc();
+            handled.set(0);
+            handlers.invoke(new TestEvent("value"));
+        }
+
+        Assertions.assertEquals(1, handled.get());
+        Assertions.assertFalse(handlers.isEmpty());
+
+    }
+
     @Test
     public void testConcurrentInvoke() {
 
@@ -205,5 +328,1238 @@ public class TestEvents {
         handlers.invoke(handled);
 
         Assertions.assertEquals(100, handled.get());
+
+        // Lists with no handlers share one future, which one caller cannot change the result of for another
+        ConcurrentHandlerList<AtomicInteger> empty = new ConcurrentHandlerList<>(svc);
+        CompletableFuture<Void> first = empty.invokeAsync(handled);
+        first.obtrudeException(new IllegalStateException());
+        first.completeExceptionally(new IllegalStateException());
+        Assertions.assertSame(first, empty.invokeAsync(handled));
+        Assertions.assertFalse(empty.invokeAsync(handled).isCompletedExceptionally());
+        Assertions.assertFalse(empty.invokeAllAsync(new AtomicInteger[0]).isCompletedExceptionally());
     }
+
+    @Test
+    public void testTieredConcurrentList() {
+        ThreadPoolExecutor svc = new ThreadPoolExecutor(8, 100, 5000L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100));
+        ConcurrentHandlerList<AtomicInteger> handlers = new ConcurrentHandlerList<>(svc, true);
+        AtomicInteger handled = new AtomicInteger();
+
+        Assertions.assertTrue(handlers.invokeAsync(handled).isDone());
+
+        AtomicInteger seenByLast = new AtomicInteger(-1);
+        for(int i = 0; i < 10 ; i++) {
+            handlers.register(this, 1, ev -> {
+                try {
+                    Thread.sleep(10L);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                ev.getAndIncrement();
+            });
+        }
+        handlers.register(this, 2, ev -> seenByLast.set(ev.get()));
+
+        handlers.invoke(handled);
+
+        Assertions.assertEquals(10, handled.get());
+        Assertions.assertEquals(10, seenByLast.get());
+        svc.shutdown();
+    }
+
+    @Test
+    public void testBatchInvoke() {
+
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        StringBuilder order = new StringBuilder();
+
+        handlers.register(this, 1, ev -> order.append("a").append(ev.value));
+        handlers.register(this, 2, ev -> order.append("b").append(ev.value));
+
+        handlers.invokeAll(Arrays.asList(new TestEvent("1"), new TestEvent("2")));
+        Assertions.assertEquals("a1a2b1b2", order.toString());
+
+        order.setLength(0);
+        handlers.invokeAll(new TestEvent[] { new TestEvent("3") });
+        Assertions.assertEquals("a3b3", order.toString());
+
+        ThreadPoolExecutor svc = new ThreadPoolExecutor(8, 100, 5000L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100));
+        ConcurrentHandlerList<AtomicInteger> concurrent = new ConcurrentHandlerList<>(svc, false, 4);
+        concurrent.register(this, AtomicInteger::getAndIncrement);
+        concurrent.register(this, AtomicInteger::getAndIncrement);
+
+        List<AtomicInteger> batch = new ArrayList<>();
+        for(int i = 0 ; i < 10 ; i++) {
+            batch.add(new AtomicInteger());
+        }
+        concurrent.invokeAll(batch);
+
+        for(AtomicInteger counter : batch) {
+            Assertions.assertEquals(2, counter.get());
+        }
+        svc.shutdown();
+    }
+
+    private static class CancellableEvent implements Cancellable {
+
+        boolean cancelled;
+        int handled;
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setCancelled(boolean cancelled) {
+            this.cancelled = cancelled;
+        }
+    }
+
+    @Test
+    public void testCancellable() {
+
+        HandlerList<CancellableEvent> handlers = new HandlerList<>();
+        AtomicInteger monitored = new AtomicInteger();
+
+        handlers.register(this, 1, true, ev -> ev.handled++);
+        handlers.register(this, 2, true, ev -> ev.setCancelled(true));
+        handlers.register(this, 3, true, ev -> ev.handled++);
+        handlers.register(this, 4, false, ev -> monitored.getAndIncrement());
+
+        CancellableEvent event = new CancellableEvent();
+        handlers.invoke(event);
+
+        Assertions.assertTrue(event.isCancelled());
+        Assertions.assertEquals(1, event.handled);
+        Assertions.assertEquals(1, monitored.get());
+
+        CancellableEvent first = new CancellableEvent();
+        CancellableEvent second = new CancellableEvent();
+        second.setCancelled(true);
+        handlers.invokeAll(new CancellableEvent[] { first, second });
+
+        Assertions.assertEquals(1, first.handled);
+        Assertions.assertEquals(0, second.handled);
+        Assertions.assertEquals(3, monitored.get());
+    }
+
+    @Test
+    public void testVirtualDeadline() throws InterruptedException {
+
+        ConcurrentHandlerList<AtomicInteger> handlers = ConcurrentHandlerList.virtual(false, Duration.ofMillis(100L));
+        AtomicInteger handled = new AtomicInteger();
+
+        handlers.register(this, ev -> {
+            try {
+                Thread.sleep(10000L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            ev.getAndIncrement();
+        });
+        handlers.register(this, AtomicInteger::getAndIncrement);
+
+        long start = System.nanoTime();
+        handlers.invoke(handled);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertEquals(1, handled.get());
+        Assertions.assertTrue(elapsed < 5000L, "Invoke waited " + elapsed + " ms for an abandoned handler");
+
+        // Missed deadlines are reported to the failure policy, so a handler which keeps missing them is disabled
+        ConcurrentHandlerList<AtomicInteger> slow = ConcurrentHandlerList.virtual(false, Duration.ofMillis(50L));
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        slow.setFailurePolicy((handler, th, consecutiveFailures) -> {
+            failures.add(th);
+            return consecutiveFailures >= 2;
+        });
+        CountDownLatch release = new CountDownLatch(1);
+        slow.register(this, ev -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        slow.invoke(handled);
+        slow.invoke(handled);
+        release.countDown();
+        for(int i = 0 ; i < 100 && !slow.isEmpty() ; i++) {
+            Thread.sleep(10L);
+        }
+        Assertions.assertEquals(2, failures.size());
+        Assertions.assertTrue(failures.get(0) instanceof TimeoutException);
+        Assertions.assertTrue(slow.isEmpty());
+    }
+
+    @Test
+    public void testDeadlineExcludesQueueTime() throws InterruptedException {
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ConcurrentHandlerList<AtomicInteger> handlers = new ConcurrentHandlerList<>(executor, false, 1, Duration.ofMillis(100L));
+            AtomicInteger handled = new AtomicInteger();
+            handlers.register(this, AtomicInteger::getAndIncrement);
+
+            // Keep the only thread busy for longer than the deadline, so the handler has to wait in the queue
+            CountDownLatch busy = new CountDownLatch(1);
+            executor.execute(() -> {
+                busy.countDown();
+                try {
+                    Thread.sleep(300L);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            busy.await();
+
+            handlers.invoke(handled);
+            Assertions.assertEquals(1, handled.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncEventBus() {
+
+        for(AsyncEventBus.WaitStrategy strategy : AsyncEventBus.WaitStrategy.values()) {
+
+            HandlerList<TestEvent> handlers = new HandlerList<>();
+            List<String> received = new ArrayList<>();
+            handlers.register(this, ev -> received.add(ev.value));
+
+            AsyncEventBus bus = new AsyncEventBus(16, 4, strategy, AsyncEventBus.Backpressure.BLOCK);
+            bus.start();
+            for(int i = 0 ; i < 100 ; i++) {
+                Assertions.assertTrue(bus.post(handlers, new TestEvent(String.valueOf(i))));
+            }
+            bus.close();
+
+            Assertions.assertEquals(100, received.size());
+            for(int i = 0 ; i < 100 ; i++) {
+                Assertions.assertEquals(String.valueOf(i), received.get(i));
+            }
+        }
+
+        HandlerList<TestEvent> blocked = new HandlerList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        blocked.register(this, ev -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        AsyncEventBus bus = new AsyncEventBus(4, 1, AsyncEventBus.WaitStrategy.PARK, AsyncEventBus.Backpressure.DROP);
+        bus.start();
+        Assertions.assertThrows(IllegalStateException.class, bus::start);
+        for(int i = 0 ; i < 10 ; i++) {
+            bus.post(blocked, new TestEvent(String.valueOf(i)));
+        }
+        Assertions.assertTrue(bus.getDroppedCount() > 0);
+        release.countDown();
+        bus.close();
+
+        // A bus which was never started has no consumer to wait for
+        new AsyncEventBus(4, AsyncEventBus.WaitStrategy.PARK).close();
+    }
+
+    @Test
+    public void testAsyncEventBusClose() throws InterruptedException {
+
+        // Every event which is accepted while the bus is closing must still be dispatched
+        for(int round = 0 ; round < 20 ; round++) {
+
+            AtomicInteger handled = new AtomicInteger();
+            AtomicInteger accepted = new AtomicInteger();
+            HandlerList<TestEvent> handlers = new HandlerList<>();
+            handlers.register(this, ev -> handled.getAndIncrement());
+
+            AsyncEventBus bus = new AsyncEventBus(64, AsyncEventBus.WaitStrategy.YIELD);
+            bus.start();
+
+            List<Thread> producers = new ArrayList<>();
+            for(int i = 0 ; i < 4 ; i++) {
+                Thread producer = new Thread(() -> {
+                    try {
+                        while(true) {
+                            if(bus.post(handlers, new TestEvent("value"))) accepted.getAndIncrement();
+                        }
+                    } catch (IllegalStateException ex) {
+                        // The bus has closed
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+
+            Thread.sleep(5L);
+            bus.close();
+            for(Thread producer : producers) {
+                producer.join();
+            }
+            Assertions.assertEquals(accepted.get(), handled.get());
+        }
+    }
+
+    @Test
+    public void testMetrics() {
+
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        EventHandler<TestEvent> failing = ev -> {
+            throw new IllegalStateException("Expected");
+        };
+
+        handlers.register(this, 1, ev -> ev.value = "modified");
+        handlers.register(this, 2, failing);
+
+        handlers.invoke(new TestEvent("orig"));
+        Assertions.assertTrue(handlers.getMetrics().isEmpty());
+
+        handlers.setInstrumented(true);
+        for(int i = 0 ; i < 10 ; i++) {
+            handlers.invoke(new TestEvent("orig"));
+        }
+        handlers.invokeAll(Arrays.asList(new TestEvent("1"), new TestEvent("2")));
+
+        List<HandlerMetrics.Snapshot> metrics = handlers.getMetrics();
+        Assertions.assertEquals(2, metrics.size());
+        Assertions.assertEquals(12, metrics.get(0).getInvocations());
+        Assertions.assertEquals(0, metrics.get(0).getExceptions());
+        Assertions.assertEquals(12, metrics.get(1).getInvocations());
+        Assertions.assertEquals(12, metrics.get(1).getExceptions());
+        Assertions.assertSame(failing, metrics.get(1).getHandler());
+        Assertions.assertTrue(metrics.get(1).getPercentileNanos(50) <= metrics.get(1).getMaxNanos());
+
+        handlers.setInstrumented(false);
+        handlers.invoke(new TestEvent("orig"));
+        Assertions.assertEquals(12, handlers.getMetrics().get(0).getInvocations());
+    }
+
+    public static class SubscribedEvent {
+        int handled;
+    }
+
+    public static class ParentListener {
+
+        @Subscribe(priority = 10)
+        public void onFirst(SubscribedEvent event) {
+            event.handled++;
+        }
+
+        @Subscribe
+        public void onOverridden(SubscribedEvent event) {
+            event.handled += 100;
+        }
+    }
+
+    private static class ChildListener extends ParentListener {
+
+        @Subscribe(priority = 60)
+        private void onPrivate(SubscribedEvent event) {
+            event.handled++;
+        }
+
+        @Override
+        @Subscribe
+        public void onOverridden(SubscribedEvent event) {
+            event.handled++;
+        }
+    }
+
+    @Test
+    public void testSubscribe() {
+
+        ChildListener listener = new ChildListener();
+        Event.register(listener);
+
+        SubscribedEvent event = new SubscribedEvent();
+        Event.invoke(event);
+        Assertions.assertEquals(3, event.handled);
+
+        // Each registration is bound to its own listener instance
+        ChildListener other = new ChildListener();
+        Event.register(other);
+        event = new SubscribedEvent();
+        Event.invoke(event);
+        Assertions.assertEquals(6, event.handled);
+
+        Event.unregisterAll(listener);
+        event = new SubscribedEvent();
+        Event.invoke(event);
+        Assertions.assertEquals(3, event.handled);
+
+        Event.unregisterAll(other);
+        event = new SubscribedEvent();
+        Event.invoke(event);
+        Assertions.assertEquals(0, event.handled);
+    }
+
+    @Test
+    public void testCoalescing() throws InterruptedException {
+
+        CoalescingHandlerList<String, TestEvent> handlers = new CoalescingHandlerList<>(ev -> ev.value.substring(0, 1));
+        List<String> received = new ArrayList<>();
+        handlers.register(this, ev -> received.add(ev.value));
+
+        handlers.invoke(new TestEvent("a1"));
+        handlers.invoke(new TestEvent("b1"));
+        handlers.invoke(new TestEvent("a2"));
+        Assertions.assertTrue(received.isEmpty());
+        Assertions.assertEquals(2, handlers.getPendingCount());
+
+        handlers.flush();
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertTrue(received.contains("a2"));
+        Assertions.assertTrue(received.contains("b1"));
+        Assertions.assertEquals(0, handlers.getPendingCount());
+
+        // Events without a key are coalesced with each other
+        CoalescingHandlerList<String, TestEvent> nullable = new CoalescingHandlerList<>(ev -> ev.value.startsWith("a") ? "a" : null);
+        received.clear();
+        nullable.register(this, ev -> received.add(ev.value));
+        nullable.invoke(new TestEvent("a1"));
+        nullable.invoke(new TestEvent("x1"));
+        nullable.invoke(new TestEvent("x2"));
+        Assertions.assertEquals(2, nullable.getPendingCount());
+        nullable.flush();
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertTrue(received.contains("x2"));
+
+        // A second flush waits for the first, so events with the same key stay in order
+        CoalescingHandlerList<String, TestEvent> ordered = new CoalescingHandlerList<>(ev -> "key");
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ordered.register(this, ev -> {
+            if(ev.value.equals("first")) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            order.add(ev.value);
+        });
+        ordered.invoke(new TestEvent("first"));
+        Thread firstFlush = new Thread(ordered::flush);
+        firstFlush.start();
+        entered.await();
+        ordered.invoke(new TestEvent("second"));
+        Thread secondFlush = new Thread(ordered::flush);
+        secondFlush.start();
+        Thread.sleep(50L);
+        release.countDown();
+        firstFlush.join();
+        secondFlush.join();
+        Assertions.assertEquals(Arrays.asList("first", "second"), order);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        CoalescingHandlerList<String, AtomicInteger> merging = new CoalescingHandlerList<>(ev -> "key", (a, b) -> {
+            a.addAndGet(b.get());
+            return a;
+        }, scheduler, Duration.ofMillis(50L));
+
+        AtomicInteger total = new AtomicInteger();
+        AtomicInteger deliveries = new AtomicInteger();
+        merging.register(this, ev -> {
+            total.addAndGet(ev.get());
+            deliveries.getAndIncrement();
+        });
+
+        for(int i = 0 ; i < 10 ; i++) {
+            merging.invoke(new AtomicInteger(1));
+        }
+
+        for(int i = 0 ; i < 500 && total.get() < 10 ; i++) {
+            Thread.sleep(10L);
+        }
+        Assertions.assertEquals(10, total.get());
+        Assertions.assertTrue(deliveries.get() < 10);
+        scheduler.shutdown();
+
+        // Once the scheduler rejects a flush, events are delivered immediately
+        merging.invoke(new AtomicInteger(1));
+        Assertions.assertEquals(11, total.get());
+        merging.invoke(new AtomicInteger(1));
+        Assertions.assertEquals(12, total.get());
+        Assertions.assertEquals(0, merging.getPendingCount());
+    }
+
+    @Test
+    public void testSingletonLatch() throws Exception {
+
+        for(int attempt = 0 ; attempt < 20 ; attempt++) {
+
+            SingletonHandlerList<TestEvent> handlers = new SingletonHandlerList<>();
+            AtomicInteger handled = new AtomicInteger();
+            CompletableFuture<TestEvent> future = handlers.getFuture();
+
+            ThreadPoolExecutor exe = new ThreadPoolExecutor(8, 100, 5000L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100));
+            for(int i = 0; i < 50 ; i++) {
+                exe.submit(() -> handlers.register(this, ev -> handled.getAndIncrement()));
+            }
+            exe.submit(() -> handlers.invoke(new TestEvent("value")));
+            exe.submit(() -> handlers.invoke(new TestEvent("ignored")));
+            exe.shutdown();
+            Assertions.assertTrue(exe.awaitTermination(5000L, TimeUnit.MILLISECONDS));
+
+            Assertions.assertEquals(50, handled.get());
+            Assertions.assertSame(handlers.getPreviousValue(), future.get(5000L, TimeUnit.MILLISECONDS));
+            Assertions.assertSame(handlers.getPreviousValue(), handlers.await());
+        }
+    }
+
+    @Test
+    public void testKeyed() {
+
+        KeyedHandlerList<String, TestEvent> handlers = new KeyedHandlerList<>(ev -> ev.value.substring(0, 1));
+        List<String> received = new ArrayList<>();
+
+        handlers.register("a", this, 10, false, ev -> received.add("a:" + ev.value));
+        handlers.register("b", this, ev -> received.add("b:" + ev.value));
+        handlers.register(this, 20, ev -> received.add("*:" + ev.value));
+
+        handlers.invoke(new TestEvent("a1"));
+        Assertions.assertEquals(Arrays.asList("a:a1", "*:a1"), received);
+
+        received.clear();
+        handlers.invoke(new TestEvent("b1"));
+        Assertions.assertEquals(Arrays.asList("*:b1", "b:b1"), received);
+
+        received.clear();
+        handlers.invoke(new TestEvent("c1"));
+        Assertions.assertEquals(Arrays.asList("*:c1"), received);
+
+        handlers.unregisterKey("a");
+        received.clear();
+        handlers.invoke(new TestEvent("a2"));
+        Assertions.assertEquals(Arrays.asList("*:a2"), received);
+
+        handlers.unregisterAll(this);
+        Assertions.assertTrue(handlers.isEmpty());
+        Assertions.assertEquals(0, handlers.getKeyCount());
+
+        // Keys are removed once their last handler is unregistered or expires
+        Subscription subscription = handlers.register("a", this, ev -> received.add("a:" + ev.value));
+        Assertions.assertEquals(1, handlers.getKeyCount());
+        subscription.unregister();
+        Assertions.assertEquals(0, handlers.getKeyCount());
+
+        handlers.register("d", new Object(), ev -> received.add("d:" + ev.value));
+        for(int i = 0 ; i < 50 && handlers.getKeyCount() != 0 ; i++) {
+            System.gc();
+            handlers.invoke(new TestEvent("c2"));
+        }
+        Assertions.assertEquals(0, handlers.getKeyCount());
+    }
+
+    @Test
+    public void testSubscription() {
+
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        List<String> received = new ArrayList<>();
+
+        Subscription first = handlers.register(this, ev -> received.add("first"));
+        Subscription second = handlers.register(this, ev -> received.add("second"));
+        Assertions.assertTrue(first.isRegistered());
+
+        first.unregister();
+        first.unregister();
+        Assertions.assertFalse(first.isRegistered());
+        Assertions.assertTrue(second.isRegistered());
+
+        handlers.invoke(new TestEvent("test"));
+        Assertions.assertEquals(Arrays.asList("second"), received);
+
+        Object module = new Object();
+        Object other = new Object();
+        AtomicInteger calls = new AtomicInteger();
+        Subscription global = Event.register(TestEvent.class, module, ev -> calls.getAndIncrement());
+        Event.register(MarkerEvent.class, module, ev -> calls.getAndIncrement());
+        Event.register(TestEvent.class, other, ev -> calls.getAndIncrement());
+
+        Event.unregisterAll(module);
+        Assertions.assertFalse(global.isRegistered());
+
+        Event.invoke(new TestEvent("test"));
+        Assertions.assertEquals(1, calls.get());
+
+        Event.unregisterAll(other);
+    }
+
+    @Test
+    public void testPrimitive() {
+
+        IntHandlerList ints = new IntHandlerList();
+        List<String> received = new ArrayList<>();
+        ints.register(this, 60, value -> received.add("late" + value));
+        Subscription early = ints.register(this, 10, value -> received.add("early" + value));
+
+        ints.invoke(3);
+        Assertions.assertEquals(Arrays.asList("early3", "late3"), received);
+
+        early.unregister();
+        received.clear();
+        ints.invoke(4);
+        Assertions.assertEquals(Arrays.asList("late4"), received);
+
+        LongHandlerList longs = new LongHandlerList();
+        longs.setInstrumented(true);
+        AtomicInteger calls = new AtomicInteger();
+        longs.register(this, value -> calls.getAndIncrement());
+        longs.register(this, value -> { throw new IllegalStateException("Expected"); });
+        longs.invoke(Long.MAX_VALUE);
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(1L, longs.getMetrics().get(1).getExceptions());
+
+        DoubleHandlerList doubles = new DoubleHandlerList();
+        double[] total = new double[1];
+        doubles.register(this, value -> total[0] += value);
+        doubles.invoke(1.5);
+        doubles.invoke(2.5);
+        Assertions.assertEquals(4.0, total[0]);
+
+        doubles.unregisterAll(this);
+        Assertions.assertTrue(doubles.isEmpty());
+
+        // Strongly referenced listeners stay registered until they are unregistered
+        Subscription strong = doubles.registerStrong(new Object(), value -> total[0] += value);
+        System.gc();
+        doubles.invoke(1.0);
+        Assertions.assertEquals(5.0, total[0]);
+        strong.unregister();
+        Assertions.assertTrue(doubles.isEmpty());
+    }
+
+    @Test
+    public void testFailurePolicy() throws InterruptedException {
+
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        RateLimitedFailurePolicy policy = new RateLimitedFailurePolicy(Duration.ofMinutes(1L), 3);
+        handlers.setFailurePolicy(policy);
+
+        AtomicInteger calls = new AtomicInteger();
+        EventHandler<TestEvent> failing = ev -> {
+            calls.getAndIncrement();
+            throw new IllegalStateException("Expected");
+        };
+        handlers.register(this, failing);
+        handlers.register(this, ev -> { });
+
+        handlers.invoke(new TestEvent("test"));
+        Assertions.assertEquals(0, policy.getSuppressedCount(failing));
+        handlers.invoke(new TestEvent("test"));
+        Assertions.assertEquals(1, policy.getSuppressedCount(failing));
+
+        // The third consecutive failure disables the handler
+        handlers.invoke(new TestEvent("test"));
+        handlers.invoke(new TestEvent("test"));
+        Assertions.assertEquals(3, calls.get());
+        Assertions.assertFalse(handlers.isEmpty());
+
+        // Suppressed failures are reported once their window ends, even if the handler never fails again
+        RateLimitedFailurePolicy windowed = new RateLimitedFailurePolicy(Duration.ofMillis(200L));
+        windowed.onFailure(failing, new IllegalStateException("Expected"), 1);
+        windowed.onFailure(failing, new IllegalStateException("Expected"), 2);
+        Assertions.assertEquals(1, windowed.getSuppressedCount(failing));
+        windowed.flush();
+        Assertions.assertEquals(1, windowed.getSuppressedCount(failing));
+        Thread.sleep(250L);
+        windowed.flush();
+        Assertions.assertEquals(0, windowed.getSuppressedCount(failing));
+
+        windowed.onFailure(failing, new IllegalStateException("Expected"), 3);
+        windowed.onFailure(failing, new IllegalStateException("Expected"), 4);
+        windowed.close();
+        Assertions.assertEquals(0, windowed.getSuppressedCount(failing));
+
+        // Scheduled flushing starts once the policy is created, and stops when it is closed
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        RateLimitedFailurePolicy scheduled = RateLimitedFailurePolicy.scheduled(Duration.ofMillis(50L), 0, scheduler);
+        Assertions.assertEquals(1, scheduler.getQueue().size());
+        scheduled.close();
+        Assertions.assertEquals(0, scheduler.getQueue().size());
+        scheduler.shutdown();
+
+        List<Object> failed = new ArrayList<>();
+        IntHandlerList ints = new IntHandlerList();
+        ints.setFailurePolicy((handler, th, consecutiveFailures) -> {
+            failed.add(handler);
+            return false;
+        });
+        IntEventHandler flaky = value -> {
+            if(value < 0) throw new IllegalArgumentException("Expected");
+        };
+        ints.register(this, flaky);
+        ints.invoke(-1);
+        ints.invoke(1);
+        Assertions.assertEquals(1, failed.size());
+        Assertions.assertSame(flaky, failed.get(0));
+        Assertions.assertFalse(ints.isEmpty());
+    }
+
+    @Test
+    public void testResultHandlers() {
+
+        ResultHandlerList<TestEvent, Boolean> votes = ResultHandlerList.allMatch();
+        AtomicInteger calls = new AtomicInteger();
+        votes.register(this, 10, ev -> {
+            calls.getAndIncrement();
+            return true;
+        });
+        votes.register(this, 20, ev -> {
+            calls.getAndIncrement();
+            return !ev.value.equals("deny");
+        });
+        votes.register(this, 30, ev -> {
+            calls.getAndIncrement();
+            return true;
+        });
+
+        Assertions.assertTrue(votes.invoke(new TestEvent("allow")));
+        Assertions.assertEquals(3, calls.get());
+
+        calls.set(0);
+        Assertions.assertFalse(votes.invoke(new TestEvent("deny")));
+        Assertions.assertEquals(2, calls.get());
+
+        ResultHandlerList<TestEvent, String> concat = new ResultHandlerList<>("", String::concat);
+        concat.register(this, 20, ev -> "b");
+        concat.register(this, 10, ev -> "a");
+        concat.register(this, 30, ev -> { throw new IllegalStateException("Expected"); });
+        Assertions.assertEquals("ab", concat.invoke(new TestEvent("test")));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ConcurrentResultHandlerList<TestEvent, String> parallel = new ConcurrentResultHandlerList<>(executor, "", String::concat);
+        for(int i = 0 ; i < 10 ; i++) {
+            String value = String.valueOf(i);
+            parallel.register(this, i, ev -> value);
+        }
+        Assertions.assertEquals("0123456789", parallel.invoke(new TestEvent("test")));
+
+        // An absorbing result from the first handlers completes the result without waiting for the others
+        CountDownLatch blocked = new CountDownLatch(1);
+        ConcurrentResultHandlerList<TestEvent, Boolean> anyMatch = new ConcurrentResultHandlerList<>(executor, false, (a, b) -> a || b, result -> result);
+        anyMatch.register(this, 1, ev -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return false;
+        });
+        anyMatch.register(this, 0, ev -> true);
+        Assertions.assertTrue(anyMatch.invoke(new TestEvent("test")));
+        blocked.countDown();
+
+        // An absorbing result from a later handler must not win over an earlier handler which finishes after it
+        CountDownLatch released = new CountDownLatch(1);
+        ConcurrentResultHandlerList<TestEvent, String> firstNonNull = new ConcurrentResultHandlerList<>(executor, null, (a, b) -> a == null ? b : a, result -> result != null);
+        firstNonNull.register(this, 0, ev -> {
+            try {
+                released.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return "first";
+        });
+        firstNonNull.register(this, 1, ev -> {
+            released.countDown();
+            return "second";
+        });
+        Assertions.assertEquals("first", firstNonNull.invoke(new TestEvent("test")));
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCompiledDispatch() {
+
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        handlers.setCompiled(true);
+
+        int[] counts = new int[20];
+        for(int i = 0 ; i < 10 ; i++) {
+            int index = i;
+            handlers.register(this, 100 - i, ev -> counts[index]++);
+        }
+
+        List<Integer> order = new ArrayList<>();
+        handlers.register(this, 0, ev -> order.add(0));
+        handlers.register(this, 1, ev -> {
+            order.add(1);
+            throw new IllegalStateException("Expected");
+        });
+        handlers.register(this, 2, ev -> order.add(2));
+
+        for(int i = 0 ; i < 2000 ; i++) {
+            handlers.invoke(new TestEvent("test"));
+        }
+        for(int i = 0 ; i < 10 ; i++) {
+            Assertions.assertEquals(2000, counts[i]);
+        }
+        Assertions.assertEquals(Arrays.asList(0, 1, 2), order.subList(order.size() - 3, order.size()));
+
+        // Registering a handler replaces the compiled dispatcher
+        handlers.register(this, ev -> counts[10]++);
+        for(int i = 0 ; i < 2000 ; i++) {
+            handlers.invoke(new TestEvent("test"));
+        }
+        Assertions.assertEquals(2000, counts[10]);
+        Assertions.assertEquals(4000, counts[0]);
+
+        HandlerList<CancellableEvent> cancellable = new HandlerList<>();
+        cancellable.setCompiled(true);
+        cancellable.register(this, 0, ev -> ev.handled++);
+        cancellable.register(this, 1, true, ev -> ev.handled++);
+
+        CancellableEvent event = new CancellableEvent();
+        event.cancelled = true;
+        for(int i = 0 ; i < 2000 ; i++) {
+            cancellable.invoke(event);
+        }
+        Assertions.assertEquals(2000, event.handled);
+    }
+
+    @Test
+    public void testCompiledFailureHandling() {
+
+        // Failures must be reported identically before and after the list is compiled
+        List<List<Integer>> results = new ArrayList<>();
+        boolean[] viaHandle = new boolean[2];
+        for(int run = 0 ; run < 2 ; run++) {
+
+            HandlerList<TestEvent> handlers = new HandlerList<>();
+            handlers.setCompiled(run == 1);
+
+            List<Integer> failures = new ArrayList<>();
+            handlers.setFailurePolicy((handler, th, consecutiveFailures) -> {
+                failures.add(consecutiveFailures);
+                return consecutiveFailures >= 1200;
+            });
+
+            int index = run;
+            AtomicInteger calls = new AtomicInteger();
+            handlers.register(this, ev -> {
+                if("last".equals(ev.value)) {
+                    for(StackTraceElement element : new Throwable().getStackTrace()) {
+                        if(element.getMethodName().equals("handle")) viaHandle[index] = true;
+                    }
+                }
+                if(calls.getAndIncrement() % 3 != 0) throw new IllegalStateException("Expected");
+            });
+            handlers.register(this, ev -> {
+                throw new IllegalStateException("Expected");
+            });
+
+            for(int i = 0 ; i < 2999 ; i++) {
+                handlers.invoke(new TestEvent("test"));
+            }
+            handlers.invoke(new TestEvent("last"));
+            results.add(failures);
+        }
+
+        Assertions.assertEquals(results.get(0), results.get(1));
+        Assertions.assertEquals(1, Collections.frequency(results.get(1), 1200));
+        Assertions.assertTrue(viaHandle[0]);
+        Assertions.assertFalse(viaHandle[1]);
+    }
+
+    @Test
+    public void testDeferredQueue() {
+
+        DeferredEventQueue queue = new DeferredEventQueue();
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        List<String> received = new ArrayList<>();
+        handlers.register(this, ev -> received.add(ev.value));
+
+        for(int i = 0 ; i < 5 ; i++) {
+            queue.post(handlers, new TestEvent("event" + i));
+        }
+        Assertions.assertEquals(5, queue.getDepth());
+        Assertions.assertTrue(received.isEmpty());
+
+        // A drain always makes progress, even with no budget
+        Assertions.assertEquals(1, queue.drain(0L));
+        Assertions.assertEquals(Arrays.asList("event0"), received);
+        Assertions.assertEquals(4, queue.getDepth());
+        Assertions.assertTrue(queue.getOldestAgeNanos() > 0L);
+
+        Assertions.assertEquals(4, queue.drain(Duration.ofSeconds(10L)));
+        Assertions.assertEquals(Arrays.asList("event0", "event1", "event2", "event3", "event4"), received);
+        Assertions.assertEquals(0, queue.getDepth());
+        Assertions.assertEquals(0L, queue.getOldestAgeNanos());
+        Assertions.assertTrue(queue.getMaxLagNanos() >= queue.getLastLagNanos());
+        Assertions.assertEquals(0, queue.drain(Duration.ofSeconds(10L)));
+    }
+
+    @Test
+    public void testStripedDispatcher() throws InterruptedException {
+
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        List<List<Integer>> received = new ArrayList<>();
+        for(int i = 0 ; i < 4 ; i++) {
+            received.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        handlers.register(this, ev -> {
+            String[] parts = ev.value.split(":");
+            received.get(Integer.parseInt(parts[0])).add(Integer.parseInt(parts[1]));
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        StripedDispatcher<String, TestEvent> dispatcher = new StripedDispatcher<>(handlers, ev -> ev.value.substring(0, 1), executor, 3);
+        Assertions.assertEquals(3, dispatcher.getLaneCount());
+
+        for(int i = 0 ; i < 1000 ; i++) {
+            dispatcher.dispatch(new TestEvent((i % 4) + ":" + i));
+        }
+
+        for(int i = 0 ; i < 500 && dispatcher.getTotalDepth() > 0 ; i++) {
+            Thread.sleep(10L);
+        }
+        Assertions.assertEquals(0, dispatcher.getTotalDepth());
+
+        for(int key = 0 ; key < 4 ; key++) {
+            List<Integer> values = received.get(key);
+            Assertions.assertEquals(250, values.size());
+            for(int i = 1 ; i < values.size() ; i++) {
+                Assertions.assertTrue(values.get(i - 1) < values.get(i));
+            }
+        }
+
+        int lane = dispatcher.getLane("0");
+        Assertions.assertTrue(dispatcher.getMaxDepth(lane) > 0);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testOrderedHandlers() {
+
+        OrderedHandlerList<TestEvent> handlers = new OrderedHandlerList<>();
+        List<String> received = new ArrayList<>();
+        List<String> none = Collections.emptyList();
+
+        handlers.register("save", this, none, Arrays.asList("log"), ev -> received.add("save"));
+        handlers.register("log", this, none, none, ev -> received.add("log"));
+        handlers.register("validate", this, Arrays.asList("save", "log"), none, ev -> received.add("validate"));
+        handlers.register(this, 0, ev -> received.add("early"));
+
+        Assertions.assertEquals(Arrays.asList("validate", "log", "save"), handlers.getOrder());
+        handlers.invoke(new TestEvent("test"));
+        Assertions.assertEquals(Arrays.asList("early", "validate", "log", "save"), received);
+
+        IllegalArgumentException cycle = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> handlers.register("audit", this, Arrays.asList("validate"), Arrays.asList("save"), ev -> { }));
+        Assertions.assertTrue(cycle.getMessage().contains("audit"));
+        Assertions.assertEquals(Arrays.asList("validate", "log", "save"), handlers.getOrder());
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> handlers.register("log", this, none, none, ev -> { }));
+
+        Subscription audit = handlers.register("audit", this, none, Arrays.asList("log"), ev -> received.add("audit"));
+        Assertions.assertEquals(Arrays.asList("validate", "log", "save", "audit"), handlers.getOrder());
+        audit.unregister();
+        Assertions.assertEquals(Arrays.asList("validate", "log", "save"), handlers.getOrder());
+    }
+
+    @Test
+    public void testStrongListener() {
+
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        AtomicInteger handled = new AtomicInteger();
+
+        Subscription strong = handlers.registerStrong(new Object(), ev -> handled.getAndIncrement());
+        handlers.register(new Object(), ev -> handled.getAndIncrement());
+
+        for(int i = 0 ; i < 50 && handled.get() != 1 ; i++) {
+            System.gc();
+            handled.set(0);
+            handlers.invoke(new TestEvent("value"));
+        }
+
+        Assertions.assertEquals(1, handled.get());
+        Assertions.assertTrue(strong.isRegistered());
+
+        strong.unregister();
+        Assertions.assertFalse(strong.isRegistered());
+        Assertions.assertTrue(handlers.isEmpty());
+
+        Object listener = new Object();
+        handlers.registerStrong(listener, ev -> handled.getAndIncrement());
+        handlers.registerStrong(listener, 10, false, ev -> handled.getAndIncrement());
+        handlers.unregisterAll(listener);
+        Assertions.assertTrue(handlers.isEmpty());
+
+        SingletonHandlerList<TestEvent> once = new SingletonHandlerList<>();
+        once.invoke(new TestEvent("done"));
+        handled.set(0);
+        once.registerStrong(listener, ev -> handled.getAndIncrement());
+        Assertions.assertEquals(1, handled.get());
+
+        // Global strong registrations are indexed by identity, and released once their list is cleared
+        handled.set(0);
+        Subscription global = Event.registerStrong(StrongEvent.class, listener, ev -> handled.getAndIncrement());
+        Event.invoke(new StrongEvent());
+        Event.unregisterAll(listener);
+        Assertions.assertFalse(global.isRegistered());
+        Event.invoke(new StrongEvent());
+        Assertions.assertEquals(1, handled.get());
+
+        WeakReference<Object> released = new WeakReference<>(registerStrongGlobal());
+        Event.unregisterAll(StrongEvent.class);
+        for(int i = 0 ; i < 50 && released.get() != null ; i++) {
+            System.gc();
+        }
+        Assertions.assertNull(released.get());
+
+        // Unregistering a listener's last subscription releases it without sweeping the index
+        WeakReference<Object> unsubscribed = registerAndUnsubscribeGlobal();
+        for(int i = 0 ; i < 50 && unsubscribed.get() != null ; i++) {
+            System.gc();
+        }
+        Assertions.assertNull(unsubscribed.get());
+    }
+
+    private static class StrongEvent { }
+
+    private static WeakReference<Object> registerAndUnsubscribeGlobal() {
+        Object listener = new Object();
+        Subscription first = Event.registerStrong(StrongEvent.class, listener, ev -> { });
+        Subscription second = Event.registerStrong(StrongEvent.class, listener, 10, false, ev -> { });
+        first.unregister();
+        second.unregister();
+        return new WeakReference<>(listener);
+    }
+
+    private static Object registerStrongGlobal() {
+        Object listener = new Object();
+        Event.registerStrong(StrongEvent.class, listener, ev -> { });
+        return listener;
+    }
+
+    @Test
+    public void testJournal() throws IOException {
+
+        Path path = Files.createTempFile("events", ".journal");
+        Files.delete(path);
+        Serializer<TestEvent> serializer = Serializer.STRING.flatMap(ev -> ev.value, TestEvent::new);
+
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+        HandlerList<Integer> numbers = new HandlerList<>();
+        handlers.register(this, ev -> ev.value = "modified");
+
+        try(EventJournal journal = new EventJournal(path, 4096, 1 << 20)) {
+            journal.record("test", handlers, serializer);
+            journal.record("numbers", numbers, Serializer.INT);
+
+            handlers.invoke(new TestEvent("first"));
+            numbers.invoke(-42);
+            Assertions.assertTrue(journal.getPendingBytes() > 0);
+
+            journal.flush();
+            Assertions.assertEquals(0, journal.getPendingBytes());
+            handlers.invoke(new TestEvent("second"));
+        }
+
+        // Closing stops recording
+        handlers.invoke(new TestEvent("ignored"));
+
+        try(EventJournal journal = new EventJournal(path, 4096, 0)) {
+            journal.record("test", handlers, serializer);
+            handlers.invoke(new TestEvent("third"));
+            Assertions.assertEquals(0, journal.getPendingBytes());
+        }
+
+        List<String> received = new ArrayList<>();
+        HandlerList<TestEvent> replayed = new HandlerList<>();
+        replayed.register(this, ev -> received.add(ev.value));
+        List<Integer> receivedNumbers = new ArrayList<>();
+        HandlerList<Integer> replayedNumbers = new HandlerList<>();
+        replayedNumbers.register(this, receivedNumbers::add);
+
+        try(JournalReplay replay = new JournalReplay(path)) {
+            replay.bind("test", replayed, serializer);
+            Assertions.assertEquals(3, replay.replay());
+            Assertions.assertEquals(Arrays.asList("first", "second", "third"), received);
+
+            replay.bind("numbers", replayedNumbers, Serializer.INT);
+            received.clear();
+            Assertions.assertEquals(4, replay.replay(1000.0));
+            Assertions.assertEquals(Arrays.asList("first", "second", "third"), received);
+            Assertions.assertEquals(Collections.singletonList(-42), receivedNumbers);
+        } finally {
+            Files.delete(path);
+        }
+
+        // A corrupt event, here a list claiming far more elements than there is data, is skipped
+        try(EventJournal journal = new EventJournal(path, 4096, 0)) {
+            journal.record("test", handlers, serializer);
+            handlers.invoke(new TestEvent("corrupt"));
+            handlers.invoke(new TestEvent("intact"));
+        }
+        byte[] data = Files.readAllBytes(path);
+        for(int i = 0 ; i < data.length - 9 ; i++) {
+            if(data[i] == 1 && data[i + 1] == 7 && data[i + 2] == 'c') {
+                data[i] = 9;
+                data[i + 1] = (byte) 0xFF;
+                data[i + 2] = (byte) 0xFF;
+                data[i + 3] = (byte) 0xFF;
+                data[i + 4] = (byte) 0xFF;
+                data[i + 5] = 0x07;
+            }
+        }
+        Files.write(path, data);
+
+        received.clear();
+        try(JournalReplay replay = new JournalReplay(path)) {
+            replay.bind("test", replayed, serializer);
+            Assertions.assertEquals(1, replay.replay());
+            Assertions.assertEquals(Collections.singletonList("intact"), received);
+        } finally {
+            Files.delete(path);
+        }
+
+        try(EventJournal journal = new EventJournal(path, 64, 0)) {
+            journal.record("test", handlers, serializer);
+            handlers.invoke(new TestEvent("a value which does not fit in the journal"));
+            Assertions.assertEquals(1, journal.getDroppedCount());
+            Assertions.assertTrue(journal.isFull());
+
+            // Smaller events which would fit are still dropped once the journal is full
+            handlers.invoke(new TestEvent("small"));
+            Assertions.assertEquals(2, journal.getDroppedCount());
+        }
+
+        received.clear();
+        try(JournalReplay replay = new JournalReplay(path)) {
+            replay.bind("test", replayed, serializer);
+            Assertions.assertEquals(0, replay.replay());
+            Assertions.assertTrue(received.isEmpty());
+        } finally {
+            Files.delete(path);
+        }
+
+        // Channel names which do not fit fill the journal, but are not counted as dropped events
+        try(EventJournal journal = new EventJournal(path, 20, 0)) {
+            journal.record("test", handlers, serializer);
+            Assertions.assertTrue(journal.isFull());
+            Assertions.assertEquals(0, journal.getDroppedCount());
+            handlers.invoke(new TestEvent("dropped"));
+            Assertions.assertEquals(1, journal.getDroppedCount());
+        }
+
+        // A committed offset inside the header is rejected, rather than letting new frames overwrite it
+        data = Files.readAllBytes(path);
+        data[15] = 4;
+        Files.write(path, data);
+        try {
+            Assertions.assertThrows(IOException.class, () -> new EventJournal(path, 20, 0));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testEventBridge() throws Exception {
+
+        Path path = Files.createTempFile("events", ".ring");
+        Files.delete(path);
+        Serializer<TestEvent> serializer = Serializer.STRING.flatMap(ev -> ev.value, TestEvent::new);
+        HandlerList<TestEvent> handlers = new HandlerList<>();
+
+        try(EventBridgeWriter writer = new EventBridgeWriter(path, 256)) {
+            writer.mirror("test", handlers, serializer);
+
+            List<String> received = new ArrayList<>();
+            HandlerList<TestEvent> delivered = new HandlerList<>();
+            delivered.register(this, ev -> received.add(ev.value));
+
+            try(EventBridgeReader reader = new EventBridgeReader(path)) {
+                reader.bind("test", delivered, serializer);
+                Assertions.assertEquals(0, reader.poll());
+
+                // Enough events to wrap around the ring several times
+                List<String> expected = new ArrayList<>();
+                for(int i = 0 ; i < 50 ; i++) {
+                    handlers.invoke(new TestEvent("event" + i));
+                    expected.add("event" + i);
+                    Assertions.assertEquals(1, reader.poll());
+                }
+                Assertions.assertEquals(expected, received);
+
+                // Falling more than a full ring behind skips ahead
+                for(int i = 0 ; i < 50 ; i++) {
+                    handlers.invoke(new TestEvent("lost" + i));
+                }
+                reader.poll();
+                Assertions.assertEquals(1, reader.getOverrunCount());
+            }
+
+            // Channels with the same ID are rejected by the writer, and told apart by readers
+            HandlerList<TestEvent> colliding = new HandlerList<>();
+            writer.mirror("Aa", colliding, serializer);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> writer.mirror("BB", colliding, serializer));
+
+            try(EventBridgeReader reader = new EventBridgeReader(path)) {
+                List<String> misdelivered = new ArrayList<>();
+                HandlerList<TestEvent> other = new HandlerList<>();
+                other.register(this, ev -> misdelivered.add(ev.value));
+                reader.bind("BB", other, serializer);
+
+                colliding.invoke(new TestEvent("collision"));
+                Assertions.assertEquals(0, reader.poll());
+                Assertions.assertTrue(misdelivered.isEmpty());
+            }
+
+            Process process = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    BridgeReaderProcess.class.getName(), path.toString()).start();
+
+            try(BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                Assertions.assertEquals("ready", output.readLine());
+                for(int i = 0 ; i < 3 ; i++) {
+                    handlers.invoke(new TestEvent("remote" + i));
+                }
+                Assertions.assertEquals("remote0", output.readLine());
+                Assertions.assertEquals("remote1", output.readLine());
+                Assertions.assertEquals("remote2", output.readLine());
+            }
+
+            Assertions.assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(0, process.exitValue());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    public static class BridgeReaderProcess {
+
+        public static void main(String[] args) throws Exception {
+
+            HandlerList<TestEvent> handlers = new HandlerList<>();
+            handlers.registerStrong(System.out, ev -> System.out.println(ev.value));
+
+            try(EventBridgeReader reader = new EventBridgeReader(Paths.get(args[0]))) {
+                reader.bind("test", handlers, Serializer.STRING.flatMap(ev -> ev.value, TestEvent::new));
+                System.out.println("ready");
+
+                int received = 0;
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while(received < 3 && System.nanoTime() < deadline) {
+                    received += reader.poll();
+                    Thread.sleep(1);
+                }
+                System.exit(received == 3 ? 0 : 1);
+            }
+        }
+    }
+
 }